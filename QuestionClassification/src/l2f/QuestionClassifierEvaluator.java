@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import l2f.classifiers.CascadeClassifier;
 import l2f.config.Config;
 import l2f.interpretation.InterpretedQuestion;
 import l2f.interpretation.QuestionAnalyzer;
@@ -118,6 +119,9 @@ public class QuestionClassifierEvaluator {
 
 
 				System.out.println("Question classification of a single instance in " + ((end - start) / (double) instances) + " ms.");
+				if (qc.getClassifier() instanceof CascadeClassifier) {
+					System.out.println("Cascade: " + ((CascadeClassifier<InterpretedQuestion>) qc.getClassifier()).getStatistics());
+				}
 				writer.close();
 				scores.put(matrix.totalAccuracy(), current);
 				fw.close();
@@ -208,7 +212,7 @@ public class QuestionClassifierEvaluator {
 			if (args.length > 0) {
 				if (args.length < 4) {
 					System.out.println("java -jar <file>.jar <classifiers> <features> <allsenses> <useFineGrainedCategories>\n"
-							+ "*** Classifiers: r=rules  s=svm\n"
+							+ "*** Classifiers: r=rules  s=svm  l=linear  c=cascade (rules, then svm)\n"
 							+ "*** Features: -u-=unigram  -h-=headword  -c-=category  -b-=bigram  -t-=trigram  x=wordshape  "
 							+ "p=pos  l=length  nr=NER_replace  ni=NER_increment\n"
 							+ "*** AllSenses = true or false\n"
@@ -231,6 +235,14 @@ public class QuestionClassifierEvaluator {
 				classifiers.add("SVM");
 				classifiersString += "+svmclassifier";
 			}
+			if (classifiersArgument.matches(".*l.*")) {
+				classifiers.add("LINEAR");
+				classifiersString += "+linearclassifier";
+			}
+			if (classifiersArgument.matches(".*c.*")) {
+				classifiers.add("CASCADE");
+				classifiersString += "+cascadeclassifier";
+			}
 			String f = "-";
 			List<FeatureSet> features = new ArrayList<FeatureSet>();
 			if (classifiers.size() == 1 && classifiers.get(0).equalsIgnoreCase("RULES")) {
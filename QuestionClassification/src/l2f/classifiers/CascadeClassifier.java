@@ -0,0 +1,277 @@
+package l2f.classifiers;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.aliasi.classify.BaseClassifier;
+import com.aliasi.classify.Classification;
+import com.aliasi.classify.ConditionalClassification;
+import com.aliasi.corpus.Corpus;
+import com.aliasi.corpus.ObjectHandler;
+import l2f.interpretation.InterpretedQuestion;
+import l2f.interpretation.classification.QuestionCategory;
+
+/**
+ * Classifier that tries the rules first and only falls back to a trained
+ * model when they do not decide.
+ *
+ * The rules are trusted for a category only if, on the training corpus,
+ * their predictions of that category were right often enough (see
+ * <code>MIN_RULE_PRECISION</code> and <code>MIN_RULE_SUPPORT</code>);
+ * questions the rules assign to a trusted category are classified without
+ * extracting features or scoring the model. The number of questions and
+ * the time spent in each stage are kept in a <code>Statistics</code>.
+ *
+ * Category probabilities are those of the model when it is a
+ * <code>ProbabilisticClassifier</code>; a question decided by the rules
+ * gets its category alone, with probability 1.
+ *
+ * @param <E>
+ */
+public class CascadeClassifier<E> implements ProbabilisticClassifier<E>, Serializable {
+
+    private static final long serialVersionUID = -3904587512306914632L;
+    /**
+     * Minimum fraction of right rule predictions of a category, on the
+     * training corpus, for the rules to be trusted for it.
+     */
+    public static final double MIN_RULE_PRECISION = 0.95;
+    /**
+     * Minimum number of rule predictions of a category, on the training
+     * corpus, for the rules to be trusted for it.
+     */
+    public static final int MIN_RULE_SUPPORT = 10;
+    private final BaseClassifier<E> rules;
+    private final BaseClassifier<E> model;
+    private final Set<String> trustedCategories;
+    private transient Statistics statistics;
+
+    /**
+     * Stages of the cascade, in the order in which they are tried.
+     */
+    public enum Stage {
+
+        RULES,
+        MODEL
+    }
+
+    /**
+     * Number of questions decided by each stage of the cascade and time
+     * spent in it, and the categories for which the rules are trusted. It
+     * can be shared by several threads.
+     */
+    public static class Statistics {
+
+        private final String[] trustedCategories;
+
+        /**
+         * Total time spent in each stage, in nanoseconds.
+         */
+        private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+        /**
+         * Number of questions that went through each stage.
+         */
+        private final AtomicLongArray counts = new AtomicLongArray(Stage.values().length);
+        /**
+         * Number of questions decided by each stage.
+         */
+        private final AtomicLongArray hits = new AtomicLongArray(Stage.values().length);
+
+        Statistics(Set<String> trustedCategories) {
+            this.trustedCategories = trustedCategories.toArray(new String[trustedCategories.size()]);
+            Arrays.sort(this.trustedCategories);
+        }
+
+        void record(Stage stage, long elapsedNanos, boolean hit) {
+            nanos.addAndGet(stage.ordinal(), elapsedNanos);
+            counts.incrementAndGet(stage.ordinal());
+            if (hit) {
+                hits.incrementAndGet(stage.ordinal());
+            }
+        }
+
+        /**
+         * Returns the categories for which the rules are trusted, sorted.
+         */
+        public String[] getTrustedCategories() {
+            return trustedCategories.clone();
+        }
+
+        /**
+         * Returns the number of questions classified.
+         */
+        public long getQuestions() {
+            return counts.get(Stage.RULES.ordinal());
+        }
+
+        /**
+         * Returns the number of questions decided by <code>stage</code>.
+         */
+        public long getHits(Stage stage) {
+            return hits.get(stage.ordinal());
+        }
+
+        /**
+         * Returns the fraction of all the questions decided by
+         * <code>stage</code>.
+         */
+        public double getHitRate(Stage stage) {
+            long questions = getQuestions();
+            return questions == 0 ? 0.0 : getHits(stage) / (double) questions;
+        }
+
+        /**
+         * Returns the total time spent in <code>stage</code>, in milliseconds.
+         */
+        public long getTotalMillis(Stage stage) {
+            return nanos.get(stage.ordinal()) / 1000000L;
+        }
+
+        /**
+         * Returns the average time spent in <code>stage</code> per question
+         * that went through it, in milliseconds.
+         */
+        public double getAverageMillis(Stage stage) {
+            long count = counts.get(stage.ordinal());
+            return count == 0 ? 0.0 : nanos.get(stage.ordinal()) / (count * 1000000.0);
+        }
+
+        public void reset() {
+            for (int i = 0; i < nanos.length(); i++) {
+                nanos.set(i, 0);
+                counts.set(i, 0);
+                hits.set(i, 0);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("rules trusted for ").append(Arrays.toString(trustedCategories)).append(", ");
+            sb.append(getQuestions()).append(" questions");
+            for (Stage stage : Stage.values()) {
+                sb.append(", ").append(stage.name().toLowerCase()).append(": ")
+                        .append(getHits(stage)).append(" hits (")
+                        .append(String.format("%.1f", 100 * getHitRate(stage))).append("%), ")
+                        .append(getTotalMillis(stage)).append(" ms (")
+                        .append(String.format("%.2f", getAverageMillis(stage))).append(" ms/question)");
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Construct a cascade of <code>rules</code> and <code>model</code>,
+     * trusting the rules for the categories they predict precisely on the
+     * training part of <code>corpus</code>.
+     *
+     * @param rules Rule-based classifier, which returns
+     * <code>QuestionCategory.VOID</code> when it cannot decide.
+     * @param model Classifier for the questions the rules do not decide.
+     * @param corpus Corpus to use for measuring the precision of the rules.
+     */
+    public CascadeClassifier(BaseClassifier<E> rules, BaseClassifier<E> model,
+            Corpus<ObjectHandler<E>> corpus) {
+        this.rules = rules;
+        this.model = model;
+        this.trustedCategories = trustedCategories(rules, corpus);
+        this.statistics = new Statistics(trustedCategories);
+    }
+
+    private static <E> Set<String> trustedCategories(final BaseClassifier<E> rules,
+            Corpus<ObjectHandler<E>> corpus) {
+        // rule predictions and right predictions of each category
+        final Map<String, int[]> predictions = new HashMap<String, int[]>();
+        try {
+            corpus.visitTrain(new ObjectHandler<E>() {
+
+                @Override
+                public void handle(E object) {
+                    String category = rules.classify(object).bestCategory();
+                    if (category.equals(QuestionCategory.VOID.name())) {
+                        return;
+                    }
+                    int[] counts = predictions.get(category);
+                    if (counts == null) {
+                        counts = new int[2];
+                        predictions.put(category, counts);
+                    }
+                    counts[0]++;
+                    if (category.equals(((InterpretedQuestion) object).getQuestionCategory().toString())) {
+                        counts[1]++;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to train cascade classifier.", e);
+        }
+        Set<String> trusted = new HashSet<String>();
+        for (Map.Entry<String, int[]> entry : predictions.entrySet()) {
+            int[] counts = entry.getValue();
+            if (counts[0] >= MIN_RULE_SUPPORT && counts[1] >= MIN_RULE_PRECISION * counts[0]) {
+                trusted.add(entry.getKey());
+            }
+        }
+        return trusted;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        statistics = new Statistics(trustedCategories);
+    }
+
+    @Override
+    public Classification classify(E in) {
+        long start = System.nanoTime();
+        Classification classification = rules.classify(in);
+        boolean trusted = trustedCategories.contains(classification.bestCategory());
+        long ruled = System.nanoTime();
+        statistics.record(Stage.RULES, ruled - start, trusted);
+        if (trusted) {
+            return classification;
+        }
+        classification = model.classify(in);
+        statistics.record(Stage.MODEL, System.nanoTime() - ruled, true);
+        return classification;
+    }
+
+    @Override
+    public ConditionalClassification classifyProbabilities(E in) {
+        long start = System.nanoTime();
+        Classification classification = rules.classify(in);
+        boolean trusted = trustedCategories.contains(classification.bestCategory());
+        long ruled = System.nanoTime();
+        statistics.record(Stage.RULES, ruled - start, trusted);
+        if (!trusted) {
+            classification = model instanceof ProbabilisticClassifier
+                    ? ((ProbabilisticClassifier<E>) model).classifyProbabilities(in)
+                    : model.classify(in);
+            statistics.record(Stage.MODEL, System.nanoTime() - ruled, true);
+        }
+        if (classification instanceof ConditionalClassification) {
+            return (ConditionalClassification) classification;
+        }
+        return new ConditionalClassification(new String[]{classification.bestCategory()}, new double[]{1});
+    }
+
+    /**
+     * Returns the categories for which the rules are trusted, sorted.
+     */
+    public String[] getTrustedCategories() {
+        return statistics.getTrustedCategories();
+    }
+
+    /**
+     * Returns the statistics of the questions classified so far.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+}
@@ -3,13 +3,20 @@ package l2f.classifiers;
 import com.aliasi.classify.BaseClassifier;
 import com.aliasi.corpus.ObjectHandler;
 import com.aliasi.corpus.Corpus;
+import com.aliasi.util.AbstractExternalizable;
 import com.aliasi.util.FeatureExtractor;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+
+import l2f.config.Config;
 
 public class ClassifierFactory {
 
     public enum ClassifierType {
 
-        SVM, NB, RULES
+        SVM, NB, RULES, LINEAR, CASCADE
     }
 
     public static <E> BaseClassifier<E> getClassifier(
@@ -18,13 +25,71 @@ public class ClassifierFactory {
             ClassifierType classifierType,
             FeatureExtractor<E> featureExtractor) {
         if (classifierType == ClassifierType.SVM) {
-            return new SvmClassifier<E>(featureExtractor, corpus, categories);
+            return new SvmClassifier<E>(featureExtractor, corpus, categories,
+                    Config.classification_svmHashDimension, Config.classification_trainingThreads,
+                    Config.classification_svmProbability);
         } else if (classifierType == ClassifierType.RULES) {
             return new RulesClassifier<E>(categories);
+        } else if (classifierType == ClassifierType.LINEAR) {
+            return new LinearClassifier<E>(featureExtractor, corpus, categories,
+                    Config.classification_svmHashDimension, Config.classification_trainingThreads);
+        } else if (classifierType == ClassifierType.CASCADE) {
+            return new CascadeClassifier<E>(new RulesClassifier<E>(categories),
+                    getClassifier(corpus, categories, ClassifierType.SVM, featureExtractor), corpus);
         } else if (classifierType == ClassifierType.NB) {
             return new LanguageModelClassifier<E>(featureExtractor, corpus, categories);
         } else {
             throw new IllegalArgumentException("Unrecognized classifier type: '" + classifierType + "'.");
         }
     }
+
+    /**
+     * Saves <code>classifier</code> to <code>file</code>, in the binary model
+     * format for SVM and linear classifiers and with Java serialization
+     * for the others.
+     */
+    public static void saveClassifier(BaseClassifier<?> classifier, File file) throws IOException {
+        if (classifier instanceof SvmClassifier) {
+            ((SvmClassifier<?>) classifier).save(file);
+        } else if (classifier instanceof LinearClassifier) {
+            ((LinearClassifier<?>) classifier).save(file);
+        } else {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            AbstractExternalizable.serializeTo((Serializable) classifier, file);
+        }
+    }
+
+    /**
+     * Loads a classifier of type <code>classifierType</code> saved by
+     * <code>saveClassifier</code>.
+     *
+     * @throws IOException if <code>file</code> does not hold a classifier of
+     * that type
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> BaseClassifier<E> loadClassifier(File file,
+            ClassifierType classifierType,
+            FeatureExtractor<E> featureExtractor) throws IOException {
+        try {
+            if (classifierType == ClassifierType.SVM) {
+                return SvmClassifier.load(file, featureExtractor);
+            } else if (classifierType == ClassifierType.LINEAR) {
+                return LinearClassifier.load(file, featureExtractor);
+            }
+        } catch (BufferUnderflowException bue) {
+            throw new IOException("Truncated model: " + file, bue);
+        }
+        Object classifier;
+        try {
+            classifier = AbstractExternalizable.readObject(file);
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException("Unable to load classifier: " + file, cnfe);
+        }
+        if (!(classifier instanceof BaseClassifier)) {
+            throw new IOException("Not a " + classifierType + " classifier: " + file);
+        }
+        return (BaseClassifier<E>) classifier;
+    }
 }
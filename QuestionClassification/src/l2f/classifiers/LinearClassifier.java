@@ -0,0 +1,405 @@
+package l2f.classifiers;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import libsvm.svm_node;
+
+import com.aliasi.classify.Classification;
+import com.aliasi.classify.ConditionalClassification;
+import com.aliasi.corpus.Corpus;
+import com.aliasi.corpus.ObjectHandler;
+import com.aliasi.symbol.MapSymbolTable;
+import com.aliasi.util.FeatureExtractor;
+import l2f.interpretation.InterpretedQuestion;
+import l2f.utils.LongIntMap;
+
+/**
+ * Linear SVM classifier trained one-vs-rest with the dual coordinate
+ * descent method of LIBLINEAR (L2-regularized, L2-loss, with a bias
+ * feature), which takes time linear in the number of training questions.
+ *
+ * Features are numbered as in <code>SvmClassifier</code>: by a symbol table
+ * of the training features or, with a hash dimension, by hashing their
+ * names.
+ *
+ * Models can be saved in the binary model format of
+ * <code>ModelFile</code>.
+ *
+ * @param <E>
+ */
+public class LinearClassifier<E> implements ProbabilisticClassifier<E>, Serializable {
+
+    private static final long serialVersionUID = -6213418392553829741L;
+    private static final int MAGIC = 0x4C494E31; // "LIN1"
+    private static final double C = 1;
+    private static final double BIAS = 1;
+    /**
+     * Stopping tolerance on the projected gradient.
+     */
+    private static final double EPSILON = 0.1;
+    private static final int MAX_ITERATIONS = 1000;
+    /**
+     * Scale of the scores in the softmax of <code>classifyProbabilities</code>,
+     * with which the mean probability of the best category is close to the
+     * accuracy on the TREC test set.
+     */
+    private static final double SOFTMAX_SCALE = 5;
+    private final FeatureExtractor<? super E> featureExtractor;
+    private final MapSymbolTable featureSymbolTable;
+    private final MapSymbolTable categorySymbolTable;
+    private final int hashDimension;
+    private final int classes;
+    /**
+     * Row of each feature with a non-zero weight in <code>weights</code>,
+     * which holds the weights of all classes for each row (as floats, to
+     * halve the model size).
+     */
+    private LongIntMap featureRows;
+    private float[] weights;
+    private double[] biases;
+
+    /**
+     * Construct a linear classifier from the specified feature extractor,
+     * and a set of pre-defined categories.
+     *
+     * @param featureExtractor Feature extractor for objects.
+     * @param corpus Corpus to use for training.
+     * @param categories Instance categories.
+     * @param hashDimension Number of hashed feature ids, or 0 to use a
+     * symbol table.
+     */
+    public LinearClassifier(FeatureExtractor<? super E> featureExtractor,
+            Corpus<ObjectHandler<E>> corpus,
+            String[] categories, int hashDimension) {
+        this(featureExtractor, corpus, categories, hashDimension, 1);
+    }
+
+    /**
+     * Construct a linear classifier, training the classes on
+     * <code>trainingThreads</code> threads (0 = one per processor).
+     *
+     * @param featureExtractor Feature extractor for objects.
+     * @param corpus Corpus to use for training.
+     * @param categories Instance categories.
+     * @param hashDimension Number of hashed feature ids, or 0 to use a
+     * symbol table.
+     * @param trainingThreads Number of training threads, or 0.
+     */
+    public LinearClassifier(FeatureExtractor<? super E> featureExtractor,
+            Corpus<ObjectHandler<E>> corpus,
+            String[] categories, int hashDimension, int trainingThreads) {
+        if (hashDimension < 0) {
+            throw new IllegalArgumentException("Invalid hash dimension: " + hashDimension);
+        }
+        this.featureExtractor = featureExtractor;
+        this.hashDimension = hashDimension;
+        this.featureSymbolTable = hashDimension > 0 ? null : new MapSymbolTable();
+        this.categorySymbolTable = new MapSymbolTable();
+        for (String category : categories) {
+            categorySymbolTable.getOrAddSymbol(category);
+        }
+        this.classes = categories.length;
+        train(corpus, trainingThreads);
+    }
+
+    private LinearClassifier(FeatureExtractor<? super E> featureExtractor,
+            MapSymbolTable categorySymbolTable, MapSymbolTable featureSymbolTable, int hashDimension,
+            LongIntMap featureRows, float[] weights, double[] biases) {
+        this.featureExtractor = featureExtractor;
+        this.categorySymbolTable = categorySymbolTable;
+        this.featureSymbolTable = featureSymbolTable;
+        this.hashDimension = hashDimension;
+        this.classes = biases.length;
+        this.featureRows = featureRows;
+        this.weights = weights;
+        this.biases = biases;
+    }
+
+    /**
+     * Saves the classifier in the binary model format: the category and
+     * feature symbol tables (or the hash dimension), the feature rows, and
+     * the weights and biases. The feature extractor is not saved.
+     */
+    public void save(File file) throws IOException {
+        DataOutputStream out = ModelFile.create(file, MAGIC);
+        try {
+            ModelFile.writeSymbols(out, categorySymbolTable);
+            out.writeInt(hashDimension);
+            ModelFile.writeSymbols(out, featureSymbolTable);
+            featureRows.write(out);
+            ModelFile.writeFloats(out, weights);
+            ModelFile.writeDoubles(out, biases);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a classifier saved by <code>save</code>, which extracts
+     * features with <code>featureExtractor</code>.
+     */
+    public static <E> LinearClassifier<E> load(File file, FeatureExtractor<? super E> featureExtractor) throws IOException {
+        ByteBuffer buffer = ModelFile.map(file, MAGIC);
+        MapSymbolTable categories = ModelFile.readSymbols(buffer);
+        int hashDimension = buffer.getInt();
+        MapSymbolTable features = ModelFile.readSymbols(buffer);
+        LongIntMap featureRows = LongIntMap.read(buffer);
+        float[] weights = ModelFile.readFloats(buffer);
+        double[] biases = ModelFile.readDoubles(buffer);
+        return new LinearClassifier<E>(featureExtractor, categories, features, hashDimension,
+                featureRows, weights, biases);
+    }
+
+    private svm_node[] toVector(E in, boolean addSymbols) {
+        if (hashDimension > 0) {
+            return SvmClassifier.toHashedVector(featureExtractor, in, hashDimension);
+        }
+        Map<String, ? extends Number> featureVector = featureExtractor.features(in);
+        int[] indexes = new int[featureVector.size()];
+        double[] values = new double[featureVector.size()];
+        int size = 0;
+        for (Map.Entry<String, ? extends Number> entry : featureVector.entrySet()) {
+            int id = addSymbols
+                    ? featureSymbolTable.getOrAddSymbol(entry.getKey())
+                    : featureSymbolTable.symbolToID(entry.getKey());
+            if (id >= 0) {
+                indexes[size] = id;
+                values[size++] = entry.getValue().doubleValue();
+            }
+        }
+        return SvmClassifier.toVector(Arrays.copyOf(indexes, size), Arrays.copyOf(values, size));
+    }
+
+    private void train(Corpus<ObjectHandler<E>> corpus, int trainingThreads) {
+        final List<svm_node[]> vectors = new ArrayList<svm_node[]>();
+        final List<Integer> labelList = new ArrayList<Integer>();
+        try {
+            corpus.visitTrain(new ObjectHandler<E>() {
+
+                @Override
+                public void handle(E object) {
+                    int label = categorySymbolTable.symbolToID(
+                            ((InterpretedQuestion) object).getQuestionCategory().toString());
+                    if (label >= 0) {
+                        vectors.add(toVector(object, true));
+                        labelList.add(label);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to train linear classifier.", e);
+        }
+
+        // training set as sparse rows
+        int l = vectors.size();
+        final int[] labels = new int[l];
+        final int[] rowStart = new int[l + 1];
+        for (int i = 0; i < l; i++) {
+            labels[i] = labelList.get(i);
+            rowStart[i + 1] = rowStart[i] + vectors.get(i).length;
+        }
+        final int[] indexes = new int[rowStart[l]];
+        final double[] values = new double[rowStart[l]];
+        int dimension = 0;
+        for (int i = 0; i < l; i++) {
+            int k = rowStart[i];
+            for (svm_node node : vectors.get(i)) {
+                indexes[k] = node.index;
+                values[k++] = node.value;
+                dimension = Math.max(dimension, node.index + 1);
+            }
+        }
+        vectors.clear();
+
+        System.out.println("feature vectors: " + l);
+        System.out.println("categories: " + classes);
+        System.out.println(hashDimension > 0
+                ? "hashed feature dimension: " + hashDimension
+                : "unique features: " + featureSymbolTable.symbolSet().size());
+        System.out.println("feature extractor" + featureExtractor.toString());
+
+        // the one-vs-rest problems are independent
+        final int featureDimension = dimension;
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for (int c = 0; c < classes; c++) {
+            final int positive = c;
+            tasks.add(new Callable<double[]>() {
+
+                @Override
+                public double[] call() {
+                    return trainBinary(rowStart, indexes, values, featureDimension, labels, positive);
+                }
+            });
+        }
+        List<double[]> classWeights = ParallelTraining.invokeAll(tasks, trainingThreads);
+        setWeights(classWeights.toArray(new double[classes][]), dimension);
+    }
+
+    /**
+     * Trains the weights (and, in the last position, the bias) separating
+     * class <code>positive</code> from the others, by dual coordinate
+     * descent with shrinking.
+     */
+    static double[] trainBinary(int[] rowStart, int[] indexes, double[] values,
+            int dimension, int[] labels, int positive) {
+        int l = labels.length;
+        double diagonal = 0.5 / C;
+        double[] w = new double[dimension + 1];
+        double[] alpha = new double[l];
+        double[] qd = new double[l];
+        int[] y = new int[l];
+        int[] index = new int[l];
+        for (int i = 0; i < l; i++) {
+            y[i] = labels[i] == positive ? 1 : -1;
+            index[i] = i;
+            qd[i] = diagonal + BIAS * BIAS;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                qd[i] += values[k] * values[k];
+            }
+        }
+        Random random = new Random(positive);
+        int active = l;
+        double maxGradientOld = Double.POSITIVE_INFINITY;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double maxGradient = Double.NEGATIVE_INFINITY;
+            double minGradient = Double.POSITIVE_INFINITY;
+            for (int s = 0; s < active; s++) {
+                int j = s + random.nextInt(active - s);
+                int swap = index[s];
+                index[s] = index[j];
+                index[j] = swap;
+            }
+            for (int s = 0; s < active; s++) {
+                int i = index[s];
+                double g = w[dimension] * BIAS;
+                for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                    g += w[indexes[k]] * values[k];
+                }
+                g = g * y[i] - 1 + alpha[i] * diagonal;
+                double projected = g;
+                if (alpha[i] == 0) {
+                    if (g > maxGradientOld) {
+                        // shrink: the variable is likely to stay at the bound
+                        active--;
+                        index[s] = index[active];
+                        index[active] = i;
+                        s--;
+                        continue;
+                    }
+                    projected = Math.min(g, 0);
+                }
+                maxGradient = Math.max(maxGradient, projected);
+                minGradient = Math.min(minGradient, projected);
+                if (Math.abs(projected) > 1.0e-12) {
+                    double old = alpha[i];
+                    alpha[i] = Math.max(alpha[i] - g / qd[i], 0);
+                    double d = (alpha[i] - old) * y[i];
+                    for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                        w[indexes[k]] += d * values[k];
+                    }
+                    w[dimension] += d * BIAS;
+                }
+            }
+            if (maxGradient - minGradient <= EPSILON) {
+                if (active == l) {
+                    break;
+                }
+                // check the shrunk variables too
+                active = l;
+                maxGradientOld = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            maxGradientOld = maxGradient <= 0 ? Double.POSITIVE_INFINITY : maxGradient;
+        }
+        return w;
+    }
+
+    /**
+     * Keeps the rows of the features with a non-zero weight in any class.
+     */
+    private void setWeights(double[][] classWeights, int dimension) {
+        featureRows = new LongIntMap(-1);
+        for (int f = 0; f < dimension; f++) {
+            for (int c = 0; c < classes; c++) {
+                if (classWeights[c][f] != 0) {
+                    featureRows.put(f, featureRows.size());
+                    break;
+                }
+            }
+        }
+        weights = new float[featureRows.size() * classes];
+        biases = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            biases[c] = classWeights[c][dimension] * BIAS;
+        }
+        for (int f = 0; f < dimension; f++) {
+            int row = featureRows.get(f);
+            if (row >= 0) {
+                for (int c = 0; c < classes; c++) {
+                    weights[row * classes + c] = (float) classWeights[c][f];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the score of each category for <code>in</code>, in the order
+     * of the categories given when training.
+     */
+    public double[] scores(E in) {
+        double[] scores = biases.clone();
+        for (svm_node node : toVector(in, false)) {
+            int row = featureRows.get(node.index);
+            if (row >= 0) {
+                int offset = row * classes;
+                for (int c = 0; c < classes; c++) {
+                    scores[c] += weights[offset + c] * node.value;
+                }
+            }
+        }
+        return scores;
+    }
+
+    @Override
+    public Classification classify(E in) {
+        double[] scores = scores(in);
+        int best = 0;
+        for (int c = 1; c < classes; c++) {
+            if (scores[c] > scores[best]) {
+                best = c;
+            }
+        }
+        return new Classification(categorySymbolTable.idToSymbol(best));
+    }
+
+    /**
+     * Returns the probability of each category for <code>in</code>, as the
+     * softmax of the scaled category scores. The probabilities rank the
+     * categories as the scores do; their scale is only roughly calibrated.
+     */
+    @Override
+    public ConditionalClassification classifyProbabilities(E in) {
+        double[] scores = scores(in);
+        double max = Double.NEGATIVE_INFINITY;
+        for (double score : scores) {
+            max = Math.max(max, score);
+        }
+        double[] ratios = new double[classes];
+        String[] categories = new String[classes];
+        for (int c = 0; c < classes; c++) {
+            ratios[c] = Math.exp(SOFTMAX_SCALE * (scores[c] - max));
+            categories[c] = categorySymbolTable.idToSymbol(c);
+        }
+        return ConditionalClassification.createProbs(categories, ratios);
+    }
+}
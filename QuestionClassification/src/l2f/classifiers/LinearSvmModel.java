@@ -0,0 +1,259 @@
+package l2f.classifiers;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * Prediction engine for one-vs-one SVM classifiers trained with a linear
+ * kernel.
+ *
+ * LibSVM's <code>svm_predict</code> computes the dot product of the input
+ * with every support vector. With a linear kernel, the decision function
+ * of each pair of classes collapses into a single weight vector, so this
+ * class keeps, for each feature, the weights it has in each pair (in
+ * primitive arrays, indexed by feature), and predicts by adding the
+ * weights of the input features to the decision values of the pairs and
+ * voting, as <code>svm_predict</code> does.
+ */
+public class LinearSvmModel implements Serializable {
+
+    private static final long serialVersionUID = 2846192635407720931L;
+    private final int classes;
+    private final int[] labels;
+    private final double[] rho;
+    /**
+     * Platt scaling parameters of each pair, or null if the model was not
+     * trained for probability estimates.
+     */
+    private final double[] probA;
+    private final double[] probB;
+    /**
+     * Weights of feature f are entries featureStart[f] to
+     * featureStart[f + 1] - 1 of <code>pairs</code> and <code>weights</code>.
+     */
+    private final int[] featureStart;
+    private final int[] pairs;
+    private final double[] weights;
+
+    private LinearSvmModel(int classes, int[] labels, double[] rho, double[] probA, double[] probB,
+            int[] featureStart, int[] pairs, double[] weights) {
+        this.classes = classes;
+        this.labels = labels;
+        this.rho = rho;
+        this.probA = probA;
+        this.probB = probB;
+        this.featureStart = featureStart;
+        this.pairs = pairs;
+        this.weights = weights;
+    }
+
+    /**
+     * Collapses the support vectors of a linear classification model into
+     * per-pair weights.
+     *
+     * @return the linear model, or null if <code>model</code> is not a
+     * classification model with a linear kernel
+     */
+    public static LinearSvmModel create(svm_model model) {
+        if (model.param.kernel_type != svm_parameter.LINEAR
+                || (model.param.svm_type != svm_parameter.C_SVC && model.param.svm_type != svm_parameter.NU_SVC)) {
+            return null;
+        }
+        int classes = model.nr_class;
+        int maxIndex = -1;
+        for (svm_node[] sv : model.SV) {
+            for (svm_node node : sv) {
+                if (node.index < 0) {
+                    return null;
+                }
+                maxIndex = Math.max(maxIndex, node.index);
+            }
+        }
+        int[] start = new int[classes];
+        for (int i = 1; i < classes; i++) {
+            start[i] = start[i - 1] + model.nSV[i - 1];
+        }
+
+        // (feature, pair, weight) entries, pair by pair
+        int[] entryFeatures = new int[1024];
+        int[] entryPairs = new int[1024];
+        double[] entryWeights = new double[1024];
+        int entries = 0;
+        double[] w = new double[maxIndex + 1];
+        boolean[] used = new boolean[maxIndex + 1];
+        int[] touched = new int[maxIndex + 1];
+        int p = 0;
+        for (int i = 0; i < classes; i++) {
+            for (int j = i + 1; j < classes; j++) {
+                int count = 0;
+                count = addSupportVectors(model, start[i], model.nSV[i], model.sv_coef[j - 1], w, used, touched, count);
+                count = addSupportVectors(model, start[j], model.nSV[j], model.sv_coef[i], w, used, touched, count);
+                Arrays.sort(touched, 0, count);
+                if (entries + count > entryFeatures.length) {
+                    int capacity = Math.max(2 * entryFeatures.length, entries + count);
+                    entryFeatures = Arrays.copyOf(entryFeatures, capacity);
+                    entryPairs = Arrays.copyOf(entryPairs, capacity);
+                    entryWeights = Arrays.copyOf(entryWeights, capacity);
+                }
+                for (int k = 0; k < count; k++) {
+                    int feature = touched[k];
+                    if (w[feature] != 0) {
+                        entryFeatures[entries] = feature;
+                        entryPairs[entries] = p;
+                        entryWeights[entries++] = w[feature];
+                    }
+                    w[feature] = 0;
+                    used[feature] = false;
+                }
+                p++;
+            }
+        }
+
+        // group the entries by feature, keeping the pair order
+        int[] featureStart = new int[maxIndex + 2];
+        for (int e = 0; e < entries; e++) {
+            featureStart[entryFeatures[e] + 1]++;
+        }
+        for (int f = 0; f <= maxIndex; f++) {
+            featureStart[f + 1] += featureStart[f];
+        }
+        int[] next = Arrays.copyOf(featureStart, maxIndex + 1);
+        int[] pairs = new int[entries];
+        double[] weights = new double[entries];
+        for (int e = 0; e < entries; e++) {
+            int position = next[entryFeatures[e]]++;
+            pairs[position] = entryPairs[e];
+            weights[position] = entryWeights[e];
+        }
+        return new LinearSvmModel(classes, model.label.clone(), model.rho.clone(),
+                model.probA != null ? model.probA.clone() : null,
+                model.probB != null ? model.probB.clone() : null,
+                featureStart, pairs, weights);
+    }
+
+    /**
+     * Adds the support vectors of a class, times their coefficients, to
+     * <code>w</code>, recording the features first used in
+     * <code>touched</code>.
+     *
+     * @return the number of features in <code>touched</code>
+     */
+    private static int addSupportVectors(svm_model model, int start, int count, double[] coef,
+            double[] w, boolean[] used, int[] touched, int touchedCount) {
+        for (int k = start; k < start + count; k++) {
+            for (svm_node node : model.SV[k]) {
+                if (!used[node.index]) {
+                    used[node.index] = true;
+                    touched[touchedCount++] = node.index;
+                }
+                w[node.index] += coef[k] * node.value;
+            }
+        }
+        return touchedCount;
+    }
+
+    /**
+     * Returns the label predicted for <code>x</code>, as
+     * <code>svm.svm_predict</code> would for the original model.
+     */
+    public double predict(svm_node[] x) {
+        double[] decisions = new double[rho.length];
+        decisionValues(x, decisions);
+        int[] votes = new int[classes];
+        int p = 0;
+        for (int i = 0; i < classes; i++) {
+            for (int j = i + 1; j < classes; j++) {
+                if (decisions[p] > 0) {
+                    ++votes[i];
+                } else {
+                    ++votes[j];
+                }
+                p++;
+            }
+        }
+        int best = 0;
+        for (int i = 1; i < classes; i++) {
+            if (votes[i] > votes[best]) {
+                best = i;
+            }
+        }
+        return labels[best];
+    }
+
+    /**
+     * Computes the decision value of each pair of classes for
+     * <code>x</code>, as <code>svm.svm_predict_values</code> would.
+     */
+    public void decisionValues(svm_node[] x, double[] decisions) {
+        for (int p = 0; p < rho.length; p++) {
+            decisions[p] = -rho[p];
+        }
+        for (svm_node node : x) {
+            if (node.index < 0 || node.index >= featureStart.length - 1) {
+                continue; // not in any support vector
+            }
+            for (int e = featureStart[node.index]; e < featureStart[node.index + 1]; e++) {
+                decisions[pairs[e]] += weights[e] * node.value;
+            }
+        }
+    }
+
+    public int getClassCount() {
+        return classes;
+    }
+
+    /**
+     * Returns the label of the <code>i</code>-th class of the model.
+     */
+    public int getLabel(int i) {
+        return labels[i];
+    }
+
+    public double[] getProbA() {
+        return probA;
+    }
+
+    public double[] getProbB() {
+        return probB;
+    }
+
+    /**
+     * Writes the model arrays, see <code>ModelFile</code>.
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(classes);
+        ModelFile.writeInts(out, labels);
+        ModelFile.writeDoubles(out, rho);
+        ModelFile.writeDoubles(out, probA);
+        ModelFile.writeDoubles(out, probB);
+        ModelFile.writeInts(out, featureStart);
+        ModelFile.writeInts(out, pairs);
+        ModelFile.writeDoubles(out, weights);
+    }
+
+    static LinearSvmModel read(ByteBuffer buffer) {
+        int classes = buffer.getInt();
+        int[] labels = ModelFile.readInts(buffer);
+        double[] rho = ModelFile.readDoubles(buffer);
+        double[] probA = ModelFile.readDoubles(buffer);
+        double[] probB = ModelFile.readDoubles(buffer);
+        int[] featureStart = ModelFile.readInts(buffer);
+        int[] pairs = ModelFile.readInts(buffer);
+        double[] weights = ModelFile.readDoubles(buffer);
+        return new LinearSvmModel(classes, labels, rho, probA, probB, featureStart, pairs, weights);
+    }
+
+    /**
+     * Number of (feature, pair) weights kept.
+     */
+    public int size() {
+        return pairs.length;
+    }
+}
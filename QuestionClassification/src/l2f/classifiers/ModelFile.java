@@ -0,0 +1,185 @@
+package l2f.classifiers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.aliasi.symbol.MapSymbolTable;
+
+/**
+ * Helpers for the binary model files of the classifiers.
+ *
+ * A model file starts with a magic number identifying the classifier and
+ * a format version, followed by sections written by the classifier: symbol
+ * tables as counts and UTF-8 strings in id order, and primitive arrays as
+ * a length (-1 for null) followed by their big-endian values. Files are
+ * read through a memory-mapped buffer, copying the arrays out in bulk.
+ */
+public class ModelFile {
+
+    static final int VERSION = 2;
+
+    private ModelFile() {
+    }
+
+    /**
+     * Creates <code>file</code> (and its directory), writing the header.
+     */
+    static DataOutputStream create(File file, int magic) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.writeInt(magic);
+        out.writeInt(VERSION);
+        return out;
+    }
+
+    /**
+     * Maps <code>file</code> into memory and checks its header.
+     *
+     * @throws IOException if the file is not a model with this magic number
+     * and version
+     */
+    static ByteBuffer map(File file, int magic) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (buffer.remaining() < 8 || buffer.getInt() != magic) {
+                throw new IOException("Not a model of this classifier type: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported model version " + version + ": " + file);
+            }
+            return buffer;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads the magic number of a model file, or returns 0 if it is too
+     * short to have one.
+     */
+    public static int magic(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.length() < 4 ? 0 : raf.readInt();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the symbols of <code>table</code> in id order, or -1 if it is
+     * null. Ids must be consecutive from 0, as those of a new
+     * <code>MapSymbolTable</code>.
+     */
+    static void writeSymbols(DataOutputStream out, MapSymbolTable table) throws IOException {
+        if (table == null) {
+            out.writeInt(-1);
+            return;
+        }
+        int size = table.numSymbols();
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            String symbol = table.idToSymbol(id);
+            if (symbol == null) {
+                throw new IOException("Symbol ids are not consecutive: missing " + id);
+            }
+            byte[] bytes = symbol.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static MapSymbolTable readSymbols(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+        MapSymbolTable table = new MapSymbolTable();
+        byte[] bytes = new byte[64];
+        for (int id = 0; id < size; id++) {
+            int length = buffer.getInt();
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buffer.get(bytes, 0, length);
+            table.getOrAddSymbol(new String(bytes, 0, length, "UTF-8"));
+        }
+        return table;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+        return values;
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    static float[] readFloats(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        float[] values = new float[length];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+        return values;
+    }
+
+    static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    static double[] readDoubles(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * values.length);
+        return values;
+    }
+}
@@ -0,0 +1,231 @@
+package l2f.classifiers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+import libsvm.svm_problem;
+
+/**
+ * Trains the independent binary subproblems of multi-class classifiers on
+ * several threads.
+ *
+ * LibSVM splits a k-class problem into k(k-1)/2 one-vs-one subproblems
+ * (1225 for the 50 fine categories) and solves them one after the other.
+ * <code>svmTrain</code> builds the same subproblems, solves each with
+ * <code>svm_train</code> on a pool of threads, and assembles the binary
+ * models into the <code>svm_model</code> <code>svm_train</code> would
+ * have returned for the whole problem.
+ */
+public class ParallelTraining {
+
+    private ParallelTraining() {
+    }
+
+    /**
+     * Number of threads to use for <code>threads</code> (0 = one per
+     * processor).
+     */
+    public static int threadCount(int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Runs <code>tasks</code> on <code>threads</code> threads (0 = one per
+     * processor) and returns their results, in the order of the tasks.
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks, int threads) {
+        int count = Math.min(threadCount(threads), Math.max(tasks.size(), 1));
+        List<T> results = new ArrayList<T>(tasks.size());
+        if (count == 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException("Unable to train classifier.", e);
+                }
+            }
+            return results;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(count, new WorkerFactory());
+        try {
+            for (Future<T> future : workers.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training classifier.", ie);
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException("Unable to train classifier.", ee.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Trains <code>prob</code> as <code>svm.svm_train</code> does, solving
+     * the one-vs-one subproblems on <code>threads</code> threads (0 = one
+     * per processor). Falls back to <code>svm_train</code> with a single
+     * thread, or for models that are not plain multi-class classifiers
+     * (regression, class weights).
+     */
+    public static svm_model svmTrain(svm_problem prob, final svm_parameter param, int threads) {
+        if (threadCount(threads) == 1
+                || (param.svm_type != svm_parameter.C_SVC && param.svm_type != svm_parameter.NU_SVC)
+                || param.nr_weight != 0) {
+            return svm.svm_train(prob, param);
+        }
+
+        // group the examples by class, in order of first appearance (as svm_train)
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = 0; i < prob.l; i++) {
+            int label = (int) prob.y[i];
+            List<Integer> group = groups.get(label);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(label, group);
+            }
+            group.add(i);
+        }
+        final int classes = groups.size();
+        if (classes < 2) {
+            return svm.svm_train(prob, param);
+        }
+        int[] labels = new int[classes];
+        int[] start = new int[classes + 1];
+        final svm_node[][] x = new svm_node[prob.l][];
+        int c = 0;
+        for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+            labels[c] = group.getKey();
+            start[c + 1] = start[c];
+            for (int i : group.getValue()) {
+                x[start[c + 1]++] = prob.x[i];
+            }
+            c++;
+        }
+
+        List<Callable<svm_model>> tasks = new ArrayList<Callable<svm_model>>();
+        for (int i = 0; i < classes; i++) {
+            for (int j = i + 1; j < classes; j++) {
+                final int startI = start[i];
+                final int countI = start[i + 1] - start[i];
+                final int startJ = start[j];
+                final int countJ = start[j + 1] - start[j];
+                tasks.add(new Callable<svm_model>() {
+
+                    @Override
+                    public svm_model call() {
+                        svm_problem sub = new svm_problem();
+                        sub.l = countI + countJ;
+                        sub.x = new svm_node[sub.l][];
+                        sub.y = new double[sub.l];
+                        for (int k = 0; k < countI; k++) {
+                            sub.x[k] = x[startI + k];
+                            sub.y[k] = +1;
+                        }
+                        for (int k = 0; k < countJ; k++) {
+                            sub.x[countI + k] = x[startJ + k];
+                            sub.y[countI + k] = -1;
+                        }
+                        return svm.svm_train(sub, param);
+                    }
+                });
+            }
+        }
+        List<svm_model> pairs = invokeAll(tasks, threads);
+
+        // support vectors: the examples with a non-zero coefficient in any pair
+        Map<svm_node[], Integer> positions = new IdentityHashMap<svm_node[], Integer>();
+        for (int k = 0; k < x.length; k++) {
+            positions.put(x[k], k);
+        }
+        boolean[] nonzero = new boolean[x.length];
+        for (svm_model pair : pairs) {
+            for (int k = 0; k < pair.l; k++) {
+                nonzero[positions.get(pair.SV[k])] = true;
+            }
+        }
+        svm_model model = new svm_model();
+        model.param = param;
+        model.nr_class = classes;
+        model.label = labels;
+        model.nSV = new int[classes];
+        int[] svIndex = new int[x.length];
+        int total = 0;
+        for (int i = 0; i < classes; i++) {
+            for (int k = start[i]; k < start[i + 1]; k++) {
+                if (nonzero[k]) {
+                    svIndex[k] = total++;
+                    model.nSV[i]++;
+                }
+            }
+        }
+        model.l = total;
+        model.SV = new svm_node[total][];
+        for (int k = 0; k < x.length; k++) {
+            if (nonzero[k]) {
+                model.SV[svIndex[k]] = x[k];
+            }
+        }
+
+        // coefficients of the class i vectors in pair (i, j) go in row j - 1,
+        // those of the class j vectors in row i
+        model.sv_coef = new double[classes - 1][total];
+        model.rho = new double[pairs.size()];
+        if (param.probability != 0) {
+            model.probA = new double[pairs.size()];
+            model.probB = new double[pairs.size()];
+        }
+        int p = 0;
+        for (int i = 0; i < classes; i++) {
+            for (int j = i + 1; j < classes; j++) {
+                svm_model pair = pairs.get(p);
+                model.rho[p] = pair.rho[0];
+                if (param.probability != 0) {
+                    model.probA[p] = pair.probA[0];
+                    model.probB[p] = pair.probB[0];
+                }
+                for (int k = 0; k < pair.l; k++) {
+                    int position = positions.get(pair.SV[k]);
+                    int row = position < start[i + 1] ? j - 1 : i;
+                    model.sv_coef[row][svIndex[position]] = pair.sv_coef[0][k];
+                }
+                p++;
+            }
+        }
+        return model;
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final int pool = poolNumber.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "classifier-trainer-" + pool + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package l2f.classifiers;
+
+import com.aliasi.classify.BaseClassifier;
+import com.aliasi.classify.ConditionalClassification;
+
+/**
+ * A classifier that, besides its best category, can estimate the
+ * probability of every category.
+ *
+ * @param <E> the type of object being classified
+ */
+public interface ProbabilisticClassifier<E> extends BaseClassifier<E> {
+
+    /**
+     * Returns all the categories, ranked by their estimated probability of
+     * being the category of <code>in</code>.
+     */
+    ConditionalClassification classifyProbabilities(E in);
+}
@@ -14,6 +14,7 @@ import l2f.interpretation.classification.QuestionCategory;
 public class RulesClassifier<E> implements BaseClassifier<E>, Serializable {
 
     private static final long serialVersionUID = 3517606761648610668L;
+    private static final QuestionPatternFinder PATTERN_FINDER = new QuestionPatternFinder();
     private final MapSymbolTable categorySymbolTable;
 
     /**
@@ -37,14 +38,11 @@ public class RulesClassifier<E> implements BaseClassifier<E>, Serializable {
     public Classification classify(E in) {
         AnalyzedQuestion aq = ((InterpretedQuestion) in).getAnalyzedQuestion();
 
-        QuestionPatternFinder qpf = new QuestionPatternFinder();
-
-        
-        
         String category = aq.getHeadwordLexiconTarget();
 
         if (category == null || category.equalsIgnoreCase("")) {
-            category = qpf.find(aq);
+            // reuses the patterns applied when the question was analyzed
+            category = PATTERN_FINDER.find(aq);
         } 
 
         if (category == null || category.equalsIgnoreCase("")) {
@@ -1,11 +1,16 @@
 package l2f.classifiers;
 
-import com.aliasi.classify.BaseClassifier;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +22,7 @@ import libsvm.svm_parameter;
 import libsvm.svm_problem;
 
 import com.aliasi.classify.Classification;
+import com.aliasi.classify.ConditionalClassification;
 import com.aliasi.corpus.Corpus;
 import com.aliasi.corpus.ObjectHandler;
 import com.aliasi.symbol.MapSymbolTable;
@@ -24,19 +30,63 @@ import com.aliasi.symbol.SymbolTable;
 import com.aliasi.util.AbstractExternalizable;
 import com.aliasi.util.FeatureExtractor;
 import l2f.interpretation.InterpretedQuestion;
+import l2f.interpretation.classification.features.HashedFeatureExtractor;
+import l2f.interpretation.classification.features.HashedFeatures;
 
 /**
  * Wrapper for LibSVM.
+ *
+ * Features are numbered either by a symbol table of the features seen in
+ * training or, when a hash dimension is given, by hashing their names into
+ * that many ids (the hashing trick), in which case no vocabulary is kept
+ * and unseen features need no lookup.
+ *
+ * Besides Java serialization, models can be saved in a binary format (see
+ * <code>save</code> and <code>load</code>) holding the category and
+ * feature tables and, for linear kernels, just the collapsed weights.
  * 
  * @param <E> 
  */
-public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
+public class SvmClassifier<E> implements ProbabilisticClassifier<E>, Serializable {
 
     private static final long serialVersionUID = 3517606761648610668L;
+    private static final int MAGIC = 0x53564D31; // "SVM1"
+    private static final int LINEAR_MODEL = 1;
+    private static final int KERNEL_MODEL = 2;
+    /**
+     * Bounds of the pairwise probabilities, as in LibSVM.
+     */
+    private static final double MIN_PROBABILITY = 1e-7;
+    /**
+     * Slope of the pairwise sigmoids of models trained without probability
+     * estimates: the median of the slopes Platt scaling fits for the fine
+     * TREC categories.
+     */
+    private static final double DEFAULT_SIGMOID_SLOPE = -4.5;
     private svm_model model;
+    /**
+     * Collapsed linear model used instead of <code>model</code> for
+     * predictions, or null if the kernel is not linear.
+     */
+    private transient LinearSvmModel linearModel;
     private final FeatureExtractor<? super E> featureExtractor;
     private final MapSymbolTable featureSymbolTable;
     private final MapSymbolTable categorySymbolTable;
+    /**
+     * Number of hashed feature ids, or 0 if features are numbered by
+     * <code>featureSymbolTable</code>.
+     */
+    private final int hashDimension;
+    /**
+     * Feature vectors reused by <code>HashedFeatureExtractor</code>s.
+     */
+    private static final ThreadLocal<HashedFeatures> HASHED_FEATURES = new ThreadLocal<HashedFeatures>() {
+
+        @Override
+        protected HashedFeatures initialValue() {
+            return new HashedFeatures();
+        }
+    };
 
     /**
      * Construct a SVM classifier from the specified feature extractor,
@@ -49,15 +99,83 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
     public SvmClassifier(FeatureExtractor<? super E> featureExtractor,
             Corpus<ObjectHandler<E>> corpus,
             String[] categories) {
+        this(featureExtractor, corpus, categories, 0);
+    }
+
+    /**
+     * Construct a SVM classifier that hashes features into
+     * <code>hashDimension</code> ids, or uses a symbol table of the
+     * training features if <code>hashDimension</code> is 0.
+     *
+     * @param featureExtractor Feature extractor for objects.
+     * @param corpus Corpus to use for training.
+     * @param categories Instance categories.
+     * @param hashDimension Number of hashed feature ids, or 0.
+     */
+    public SvmClassifier(FeatureExtractor<? super E> featureExtractor,
+            Corpus<ObjectHandler<E>> corpus,
+            String[] categories, int hashDimension) {
+        this(featureExtractor, corpus, categories, hashDimension, 1);
+    }
+
+    /**
+     * Construct a SVM classifier that hashes features into
+     * <code>hashDimension</code> ids (or uses a symbol table if it is 0),
+     * training the one-vs-one subproblems on <code>trainingThreads</code>
+     * threads (0 = one per processor).
+     *
+     * @param featureExtractor Feature extractor for objects.
+     * @param corpus Corpus to use for training.
+     * @param categories Instance categories.
+     * @param hashDimension Number of hashed feature ids, or 0.
+     * @param trainingThreads Number of training threads, or 0.
+     */
+    public SvmClassifier(FeatureExtractor<? super E> featureExtractor,
+            Corpus<ObjectHandler<E>> corpus,
+            String[] categories, int hashDimension, int trainingThreads) {
+        this(featureExtractor, corpus, categories, hashDimension, trainingThreads, false);
+    }
+
+    /**
+     * Construct a SVM classifier as above, also fitting the parameters of
+     * LibSVM's probability estimates if <code>probabilityEstimates</code>
+     * is set (which takes several times longer to train).
+     *
+     * @param featureExtractor Feature extractor for objects.
+     * @param corpus Corpus to use for training.
+     * @param categories Instance categories.
+     * @param hashDimension Number of hashed feature ids, or 0.
+     * @param trainingThreads Number of training threads, or 0.
+     * @param probabilityEstimates Whether to fit probability estimates.
+     */
+    public SvmClassifier(FeatureExtractor<? super E> featureExtractor,
+            Corpus<ObjectHandler<E>> corpus,
+            String[] categories, int hashDimension, int trainingThreads,
+            boolean probabilityEstimates) {
+        if (hashDimension < 0) {
+            throw new IllegalArgumentException("Invalid hash dimension: " + hashDimension);
+        }
         this.featureExtractor = featureExtractor;
-        this.featureSymbolTable = new MapSymbolTable();
+        this.hashDimension = hashDimension;
+        this.featureSymbolTable = hashDimension > 0 ? null : new MapSymbolTable();
         this.categorySymbolTable = new MapSymbolTable();
         initializeCategories(categories);
-        trainSvm(corpus);
+        trainSvm(corpus, trainingThreads, probabilityEstimates);
 
     }
 
-    private void trainSvm(Corpus<ObjectHandler<E>> corpus) {
+    private SvmClassifier(FeatureExtractor<? super E> featureExtractor,
+            MapSymbolTable categorySymbolTable, MapSymbolTable featureSymbolTable,
+            int hashDimension, svm_model model, LinearSvmModel linearModel) {
+        this.featureExtractor = featureExtractor;
+        this.categorySymbolTable = categorySymbolTable;
+        this.featureSymbolTable = featureSymbolTable;
+        this.hashDimension = hashDimension;
+        this.model = model;
+        this.linearModel = linearModel;
+    }
+
+    private void trainSvm(Corpus<ObjectHandler<E>> corpus, int trainingThreads, boolean probabilityEstimates) {
         CorpusCollector collector = new CorpusCollector();
         try {
             corpus.visitTrain(collector);
@@ -69,12 +187,17 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
         corpus = null;
         int maxIndex = 0;
         svm_parameter param = initializeSvmParameters();
+        param.probability = probabilityEstimates ? 1 : 0;
         svm_problem prob = new svm_problem();
         prob.l = featureVectors.length;
         
         System.out.println("feature vectors: " + prob.l);
         System.out.println("categories: " + categorySymbolTable.symbolSet().size());
-        System.out.println("unique features: " + featureSymbolTable.symbolSet().size());
+        if (hashDimension > 0) {
+            System.out.println("hashed feature dimension: " + hashDimension);
+        } else {
+            System.out.println("unique features: " + featureSymbolTable.symbolSet().size());
+        }
         System.out.println("feature extractor" + featureExtractor.toString());
 
         prob.x = new svm_node[prob.l][];
@@ -96,7 +219,140 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
             throw new IllegalArgumentException("A problem has ocurred while training SVM: " + errorMsg);
         }
 
-        model = svm.svm_train(prob, param);
+        model = ParallelTraining.svmTrain(prob, param, trainingThreads);
+        linearModel = LinearSvmModel.create(model);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (model == null) {
+            // loaded from a binary model with only the linear weights
+            out.writeObject(linearModel);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        linearModel = model != null ? LinearSvmModel.create(model) : (LinearSvmModel) in.readObject();
+    }
+
+    /**
+     * Saves the classifier in the binary model format: the category and
+     * feature symbol tables (or the hash dimension), then either the
+     * collapsed weights of a linear model or the support vectors and
+     * coefficients of the LibSVM model. The feature extractor is not saved.
+     */
+    public void save(File file) throws IOException {
+        DataOutputStream out = ModelFile.create(file, MAGIC);
+        try {
+            ModelFile.writeSymbols(out, categorySymbolTable);
+            out.writeInt(hashDimension);
+            ModelFile.writeSymbols(out, featureSymbolTable);
+            if (linearModel != null) {
+                out.writeInt(LINEAR_MODEL);
+                linearModel.write(out);
+            } else {
+                out.writeInt(KERNEL_MODEL);
+                writeModel(out, model);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a classifier saved by <code>save</code>, which extracts
+     * features with <code>featureExtractor</code>.
+     */
+    public static <E> SvmClassifier<E> load(File file, FeatureExtractor<? super E> featureExtractor) throws IOException {
+        ByteBuffer buffer = ModelFile.map(file, MAGIC);
+        MapSymbolTable categories = ModelFile.readSymbols(buffer);
+        int hashDimension = buffer.getInt();
+        MapSymbolTable features = ModelFile.readSymbols(buffer);
+        int type = buffer.getInt();
+        if (type == LINEAR_MODEL) {
+            return new SvmClassifier<E>(featureExtractor, categories, features, hashDimension,
+                    null, LinearSvmModel.read(buffer));
+        } else if (type == KERNEL_MODEL) {
+            svm_model model = readModel(buffer);
+            return new SvmClassifier<E>(featureExtractor, categories, features, hashDimension,
+                    model, LinearSvmModel.create(model));
+        }
+        throw new IOException("Unknown SVM model type " + type + ": " + file);
+    }
+
+    /*
+     * Kernel parameters, classes, and the support vectors as sparse rows.
+     */
+    private static void writeModel(DataOutputStream out, svm_model model) throws IOException {
+        out.writeInt(model.param.svm_type);
+        out.writeInt(model.param.kernel_type);
+        out.writeInt(model.param.degree);
+        out.writeDouble(model.param.gamma);
+        out.writeDouble(model.param.coef0);
+        out.writeInt(model.nr_class);
+        ModelFile.writeInts(out, model.label);
+        ModelFile.writeInts(out, model.nSV);
+        ModelFile.writeDoubles(out, model.rho);
+        ModelFile.writeDoubles(out, model.probA);
+        ModelFile.writeDoubles(out, model.probB);
+        out.writeInt(model.sv_coef.length);
+        for (double[] coef : model.sv_coef) {
+            ModelFile.writeDoubles(out, coef);
+        }
+        int[] svStart = new int[model.l + 1];
+        for (int i = 0; i < model.l; i++) {
+            svStart[i + 1] = svStart[i] + model.SV[i].length;
+        }
+        int[] indexes = new int[svStart[model.l]];
+        double[] values = new double[svStart[model.l]];
+        for (int i = 0; i < model.l; i++) {
+            for (int k = 0; k < model.SV[i].length; k++) {
+                indexes[svStart[i] + k] = model.SV[i][k].index;
+                values[svStart[i] + k] = model.SV[i][k].value;
+            }
+        }
+        ModelFile.writeInts(out, svStart);
+        ModelFile.writeInts(out, indexes);
+        ModelFile.writeDoubles(out, values);
+    }
+
+    private static svm_model readModel(ByteBuffer buffer) {
+        svm_model model = new svm_model();
+        model.param = new svm_parameter();
+        model.param.svm_type = buffer.getInt();
+        model.param.kernel_type = buffer.getInt();
+        model.param.degree = buffer.getInt();
+        model.param.gamma = buffer.getDouble();
+        model.param.coef0 = buffer.getDouble();
+        model.nr_class = buffer.getInt();
+        model.label = ModelFile.readInts(buffer);
+        model.nSV = ModelFile.readInts(buffer);
+        model.rho = ModelFile.readDoubles(buffer);
+        model.probA = ModelFile.readDoubles(buffer);
+        model.probB = ModelFile.readDoubles(buffer);
+        model.sv_coef = new double[buffer.getInt()][];
+        for (int i = 0; i < model.sv_coef.length; i++) {
+            model.sv_coef[i] = ModelFile.readDoubles(buffer);
+        }
+        int[] svStart = ModelFile.readInts(buffer);
+        int[] indexes = ModelFile.readInts(buffer);
+        double[] values = ModelFile.readDoubles(buffer);
+        model.l = svStart.length - 1;
+        model.SV = new svm_node[model.l][];
+        for (int i = 0; i < model.l; i++) {
+            model.SV[i] = new svm_node[svStart[i + 1] - svStart[i]];
+            for (int k = 0; k < model.SV[i].length; k++) {
+                model.SV[i][k] = new svm_node();
+                model.SV[i][k].index = indexes[svStart[i] + k];
+                model.SV[i][k].value = values[svStart[i] + k];
+            }
+        }
+        return model;
+    }
+
+    private double predict(svm_node[] inputVector) {
+        return linearModel != null ? linearModel.predict(inputVector) : svm.svm_predict(model, inputVector);
     }
 
     private void initializeCategories(String[] categories) {
@@ -136,6 +392,136 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
      */
     @Override
     public Classification classify(E in) {
+        double categoryId = predict(toVector(in));
+        return new Classification(categorySymbolTable.idToSymbol((int) categoryId));
+    }
+
+    /**
+     * Returns the probability of each category for the specified input.
+     *
+     * The decision value of each pair of classes is turned into a pairwise
+     * probability with the sigmoid fitted by LibSVM (Platt scaling), if
+     * the model was trained with probability estimates, or with a fixed
+     * sigmoid of the margin otherwise, and the pairwise
+     * probabilities are coupled into class probabilities as in
+     * <code>svm_predict_probability</code>. Without probability
+     * estimates, the probabilities rank the categories but are not
+     * calibrated. Decision values come from the collapsed weights when the
+     * kernel is linear.
+     */
+    @Override
+    public ConditionalClassification classifyProbabilities(E in) {
+        svm_node[] x = toVector(in);
+        int classes;
+        double[] probA;
+        double[] probB;
+        double[] decisions;
+        if (linearModel != null) {
+            classes = linearModel.getClassCount();
+            probA = linearModel.getProbA();
+            probB = linearModel.getProbB();
+            decisions = new double[classes * (classes - 1) / 2];
+            linearModel.decisionValues(x, decisions);
+        } else {
+            classes = model.nr_class;
+            probA = model.probA;
+            probB = model.probB;
+            decisions = new double[classes * (classes - 1) / 2];
+            svm.svm_predict_values(model, x, decisions);
+        }
+        double[][] pairwise = new double[classes][classes];
+        int p = 0;
+        for (int i = 0; i < classes; i++) {
+            for (int j = i + 1; j < classes; j++) {
+                double r = probA != null
+                        ? sigmoid(decisions[p], probA[p], probB[p])
+                        : sigmoid(decisions[p], DEFAULT_SIGMOID_SLOPE, 0);
+                r = Math.min(Math.max(r, MIN_PROBABILITY), 1 - MIN_PROBABILITY);
+                pairwise[i][j] = r;
+                pairwise[j][i] = 1 - r;
+                p++;
+            }
+        }
+        double[] probabilities = coupleProbabilities(pairwise);
+        String[] categories = new String[classes];
+        for (int i = 0; i < classes; i++) {
+            int label = linearModel != null ? linearModel.getLabel(i) : model.label[i];
+            categories[i] = categorySymbolTable.idToSymbol(label);
+        }
+        return ConditionalClassification.createProbs(categories, probabilities);
+    }
+
+    /**
+     * LibSVM's <code>sigmoid_predict</code>: 1 / (1 + exp(a * x + b)),
+     * computed without overflow.
+     */
+    static double sigmoid(double x, double a, double b) {
+        double fApB = x * a + b;
+        return fApB >= 0 ? Math.exp(-fApB) / (1 + Math.exp(-fApB)) : 1 / (1 + Math.exp(fApB));
+    }
+
+    /**
+     * Estimates class probabilities from the pairwise probabilities
+     * <code>r[i][j]</code> of class i over class j, by the second method of
+     * Wu, Lin and Weng (2004), as LibSVM's
+     * <code>multiclass_probability</code>.
+     */
+    static double[] coupleProbabilities(double[][] r) {
+        int k = r.length;
+        int maxIterations = Math.max(100, k);
+        double[][] q = new double[k][k];
+        double[] qp = new double[k];
+        double[] p = new double[k];
+        double eps = 0.005 / k;
+        for (int t = 0; t < k; t++) {
+            p[t] = 1.0 / k;
+            for (int j = 0; j < t; j++) {
+                q[t][t] += r[j][t] * r[j][t];
+                q[t][j] = q[j][t];
+            }
+            for (int j = t + 1; j < k; j++) {
+                q[t][t] += r[j][t] * r[j][t];
+                q[t][j] = -r[j][t] * r[t][j];
+            }
+        }
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            // stopping condition, recalculate qp and pqp for numerical accuracy
+            double pqp = 0;
+            for (int t = 0; t < k; t++) {
+                qp[t] = 0;
+                for (int j = 0; j < k; j++) {
+                    qp[t] += q[t][j] * p[j];
+                }
+                pqp += p[t] * qp[t];
+            }
+            double maxError = 0;
+            for (int t = 0; t < k; t++) {
+                maxError = Math.max(maxError, Math.abs(qp[t] - pqp));
+            }
+            if (maxError < eps) {
+                break;
+            }
+            for (int t = 0; t < k; t++) {
+                double diff = (-qp[t] + pqp) / q[t][t];
+                p[t] += diff;
+                pqp = (pqp + diff * (diff * q[t][t] + 2 * qp[t])) / (1 + diff) / (1 + diff);
+                for (int j = 0; j < k; j++) {
+                    qp[j] = (qp[j] + diff * q[t][j]) / (1 + diff);
+                    p[j] /= (1 + diff);
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Converts the features of <code>in</code> into a svm_node vector,
+     * leaving out the features not seen in training.
+     */
+    private svm_node[] toVector(E in) {
+        if (hashDimension > 0) {
+            return toHashedVector(featureExtractor, in, hashDimension);
+        }
         Map<String, ? extends Number> featureVector = featureExtractor.features(in);
         List<String> keysToRemove = new ArrayList<String>();
         for (String key : featureVector.keySet()) {
@@ -146,10 +532,7 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
         for (String key : keysToRemove) {
             featureVector.remove(key);
         }
-        svm_node[] inputVector = toVector(featureVector, featureSymbolTable);
-        double categoryId = svm.svm_predict(model, inputVector);
-        String category = categorySymbolTable.idToSymbol((int) categoryId);
-        return new Classification(category);
+        return toVector(featureVector, featureSymbolTable);
     }
 
     class CorpusCollector implements ObjectHandler<E> {
@@ -158,8 +541,12 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
         final List<Double> _inputCategoryVectorList = new ArrayList<Double>();
 
         public void handle(E object) {
-            Map<String, ? extends Number> featureMap = featureExtractor.features(object);
-            _inputFeatureVectorList.add(toVectorAddSymbols(featureMap, featureSymbolTable));
+            if (hashDimension > 0) {
+                _inputFeatureVectorList.add(toHashedVector(featureExtractor, object, hashDimension));
+            } else {
+                Map<String, ? extends Number> featureMap = featureExtractor.features(object);
+                _inputFeatureVectorList.add(toVectorAddSymbols(featureMap, featureSymbolTable));
+            }
             _inputCategoryVectorList.add(
                     new Integer(categorySymbolTable.symbolToID(((InterpretedQuestion)object).getQuestionCategory().toString())).doubleValue());
         }
@@ -238,6 +625,75 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
         java.util.Arrays.sort(x, VECTOR_COMPARATOR);
         return x;
     }
+    /**
+     * Converts the features of <code>in</code> into a svm_node vector of
+     * hashed feature ids, using the extractor's hashed features if it
+     * provides them.
+     */
+    @SuppressWarnings("unchecked")
+    static <F> svm_node[] toHashedVector(FeatureExtractor<? super F> featureExtractor, F in, int hashDimension) {
+        if (featureExtractor instanceof HashedFeatureExtractor) {
+            HashedFeatures features = HASHED_FEATURES.get();
+            ((HashedFeatureExtractor<? super F>) featureExtractor).features(in, features);
+            int size = features.size();
+            int[] indexes = new int[size];
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                indexes[i] = hashIndex(features.id(i), hashDimension);
+                values[i] = features.count(i);
+            }
+            return toVector(indexes, values);
+        }
+        Map<String, ? extends Number> featureVector = featureExtractor.features(in);
+        int[] indexes = new int[featureVector.size()];
+        double[] values = new double[featureVector.size()];
+        int i = 0;
+        for (Map.Entry<String, ? extends Number> entry : featureVector.entrySet()) {
+            indexes[i] = hashIndex(entry.getKey().hashCode(), hashDimension);
+            values[i++] = entry.getValue().doubleValue();
+        }
+        return toVector(indexes, values);
+    }
+
+    /**
+     * Maps the hash code of a feature name into an id between 1 and
+     * <code>dimension</code>.
+     */
+    static int hashIndex(int hash, int dimension) {
+        int h = hash * 0x9E3779B9;
+        h ^= h >>> 16;
+        return 1 + (int) ((h & 0xFFFFFFFFL) % dimension);
+    }
+
+    /**
+     * Builds a svm_node vector ordered by index, adding up the values of
+     * features that share an index.
+     */
+    static svm_node[] toVector(int[] indexes, double[] values) {
+        long[] order = new long[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            order[i] = ((long) indexes[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int size = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || (order[i] >>> 32) != (order[i - 1] >>> 32)) {
+                size++;
+            }
+        }
+        svm_node[] x = new svm_node[size];
+        int n = -1;
+        for (int i = 0; i < order.length; i++) {
+            int index = (int) (order[i] >>> 32);
+            if (n < 0 || x[n].index != index) {
+                x[++n] = new svm_node();
+                x[n].index = index;
+            }
+            x[n].value += values[(int) order[i]];
+        }
+        return x;
+    }
+
     // LibSVM requires svm_node[] to be ordered by index
     static final Comparator<svm_node> VECTOR_COMPARATOR = new Comparator<svm_node>() {
 
@@ -260,17 +716,20 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         protected Object read(ObjectInput in) throws ClassNotFoundException, IOException {
             // feature extractor
-			/*FeatureExtractor<F> featureExtractor = (FeatureExtractor<F>)in.readObject();
+            FeatureExtractor<F> featureExtractor = (FeatureExtractor<F>) in.readObject();
             // category symbol table
-            MapSymbolTable categories = (MapSymbolTable)in.readObject();
-            // feature symbol table
-            MapSymbolTable features = (MapSymbolTable)in.readObject();
-            // svm model
-            svm_problem problem = (svm_problem)in.readObject();
-             */
-            return null;
+            MapSymbolTable categories = (MapSymbolTable) in.readObject();
+            // feature symbol table (null when hashing features)
+            MapSymbolTable features = (MapSymbolTable) in.readObject();
+            int hashDimension = in.readInt();
+            // svm model (null when only the linear weights were loaded)
+            svm_model model = (svm_model) in.readObject();
+            LinearSvmModel linearModel = model != null
+                    ? LinearSvmModel.create(model) : (LinearSvmModel) in.readObject();
+            return new SvmClassifier<F>(featureExtractor, categories, features, hashDimension, model, linearModel);
         }
 
         @Override
@@ -281,8 +740,12 @@ public class SvmClassifier<E> implements BaseClassifier<E>, Serializable {
             out.writeObject(_classifier.categorySymbolTable);
             // feature symbol table
             out.writeObject(_classifier.featureSymbolTable);
+            out.writeInt(_classifier.hashDimension);
             // svm model
             out.writeObject(_classifier.model);
+            if (_classifier.model == null) {
+                out.writeObject(_classifier.linearModel);
+            }
         }
     }
 }
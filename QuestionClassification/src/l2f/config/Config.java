@@ -36,12 +36,74 @@ public class Config {
     public static String classification_testDir = "";
     public static boolean classification_forceTraining = false;
     public static String classification_modelFile = "";
+    /**
+     * Number of hashed feature ids used by SVM models (0 numbers the
+     * features seen in training with a symbol table instead).
+     */
+    public static int classification_svmHashDimension = 0;
+    /**
+     * Number of threads used to train the binary subproblems of SVM and
+     * linear classifiers (0 = one per processor, 1 = train serially).
+     */
+    public static int classification_trainingThreads = 0;
+    /**
+     * Whether SVM models are trained for calibrated probability estimates
+     * (Platt scaling), used by top-k classification.
+     */
+    public static boolean classification_svmProbability = false;
     /** analysis*/
     public static String questionAnalysis_tokenizerType = "";
     public static String questionAnalysis_parserGrammarFile = "";
     public static String questionAnalysis_lexiconmapFile = "";
+    /**
+     * Binary snapshot of the lexicon map, loaded instead of the XML file
+     * (empty to always parse the XML file).
+     */
+    public static String questionAnalysis_lexiconmapSnapshot = "";
+    /**
+     * Number of threads used to analyze batches of questions
+     * (0 means one per available processor).
+     */
+    public static int questionAnalysis_threads = 0;
+    /**
+     * File where analyzed questions are cached between runs
+     * (empty to disable the cache).
+     */
+    public static String questionAnalysis_cacheFile = "";
     /**Natural Language Processing */
     public static String nlp_wordnetProperties = "";
+    /**
+     * File where the hypernym closure of the lexicon map is saved
+     * (empty to walk WordNet's hypernyms on every lookup).
+     */
+    public static String nlp_wordnetHypernymIndex = "";
+    /**
+     * Lexicon implementation (see <code>LexiconFactory.LexiconType</code>)
+     * and, for MAPPED_WORDNET, the file where the binary WordNet is saved.
+     */
+    public static String nlp_lexiconType = "WORDNET";
+    public static String nlp_wordnetMappedFile = "";
+    /**
+     * Maximum number of parses cached per grammar (0 disables the cache)
+     * and their maximum estimated size in bytes (0 for no limit).
+     */
+    public static int nlp_parserCacheEntries = 0;
+    public static long nlp_parserCacheBytes = 0;
+    /**
+     * Maximum time, in milliseconds, to parse a question before falling
+     * back to a shallow analysis (0 for no limit).
+     */
+    public static long nlp_parserTimeout = 0;
+    /**
+     * Model of the POS tagger whose tags constrain the parser, trained on
+     * first use (empty to parse without POS constraints).
+     */
+    public static String nlp_taggerModelFile = "";
+    /**
+     * Minimum margin between the best and second best tag of every token
+     * for the tags to constrain the parser (0 to always use them).
+     */
+    public static double nlp_taggerMinMargin = 0;
 
     public static void parseConfig(String configfile) {
         try {
@@ -74,6 +136,12 @@ public class Config {
             expr = xpath.compile("//interpretation/classification/modelsClassifierFile");
             node = (Node) expr.evaluate(doc, XPathConstants.NODE);
             classification_modelFile = node.getTextContent();
+            classification_svmHashDimension = Integer.parseInt(
+                    getText(xpath, doc, "//interpretation/classification/svmHashDimension", "0"));
+            classification_trainingThreads = Integer.parseInt(
+                    getText(xpath, doc, "//interpretation/classification/trainingThreads", "0"));
+            classification_svmProbability = Boolean.parseBoolean(
+                    getText(xpath, doc, "//interpretation/classification/svmProbability", "false"));
 
             /**analysis*/
             expr = xpath.compile("//interpretation/analysis/tokenizerType");
@@ -87,14 +155,43 @@ public class Config {
             expr = xpath.compile("//interpretation/analysis/lexiconmapFile");
             node = (Node) expr.evaluate(doc, XPathConstants.NODE);
             questionAnalysis_lexiconmapFile = node.getTextContent();
+            questionAnalysis_lexiconmapSnapshot = getText(xpath, doc, "//interpretation/analysis/lexiconmapSnapshot", "");
+
+            questionAnalysis_threads = Integer.parseInt(
+                    getText(xpath, doc, "//interpretation/analysis/threads", "0"));
+            questionAnalysis_cacheFile = getText(xpath, doc, "//interpretation/analysis/cacheFile", "");
 
             /**natural language processing */
             expr = xpath.compile("//nlp/wordnet/properties");
             node = (Node) expr.evaluate(doc, XPathConstants.NODE);
             nlp_wordnetProperties = node.getTextContent();
+            nlp_wordnetHypernymIndex = getText(xpath, doc, "//nlp/wordnet/hypernymIndex", "");
+            nlp_lexiconType = getText(xpath, doc, "//nlp/wordnet/lexiconType", "WORDNET");
+            nlp_wordnetMappedFile = getText(xpath, doc, "//nlp/wordnet/mappedFile", "");
+
+            nlp_parserCacheEntries = Integer.parseInt(
+                    getText(xpath, doc, "//nlp/parser/cacheEntries", "0"));
+            nlp_parserCacheBytes = Long.parseLong(
+                    getText(xpath, doc, "//nlp/parser/cacheBytes", "0"));
+            nlp_parserTimeout = Long.parseLong(
+                    getText(xpath, doc, "//nlp/parser/timeout", "0"));
+            nlp_taggerModelFile = getText(xpath, doc, "//nlp/tagger/modelFile", "");
+            nlp_taggerMinMargin = Double.parseDouble(
+                    getText(xpath, doc, "//nlp/tagger/minMargin", "0"));
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Returns the text content of the node at <code>path</code>, or
+     * <code>defaultValue</code> if there is no such node, so that optional
+     * settings can be left out of older configuration files.
+     */
+    private static String getText(XPath xpath, Document doc, String path,
+            String defaultValue) throws XPathExpressionException {
+        Node node = (Node) xpath.compile(path).evaluate(doc, XPathConstants.NODE);
+        return node == null ? defaultValue : node.getTextContent().trim();
+    }
 }
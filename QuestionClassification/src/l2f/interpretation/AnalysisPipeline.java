@@ -0,0 +1,129 @@
+package l2f.interpretation;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AnalysisPipeline analyzes a stream of questions with a pool of worker
+ * threads, each one running the whole <code>QuestionAnalyzer</code> chain
+ * (tokenization, parsing, focus extraction and lexicon mapping) with its
+ * own tokenizer and parser.
+ *
+ * Results are returned in input order. At most a fixed number of questions
+ * (twice the number of workers) is in flight at any time, so questions are
+ * only read from the input as results are consumed.
+ *
+ * Questions are parsed without a timeout, so that analyzing a corpus gives
+ * the same result regardless of the load of the machine.
+ *
+ * @see QuestionAnalyzer#analyzeAll(Iterable)
+ */
+public class AnalysisPipeline implements Iterator<AnalyzedQuestion> {
+
+    private final QuestionAnalyzer analyzer;
+    private final Iterator<String> questions;
+    private final ExecutorService workers;
+    /**
+     * Questions submitted to the workers, in input order.
+     */
+    private final Queue<Future<AnalyzedQuestion>> pending = new LinkedList<Future<AnalyzedQuestion>>();
+    /**
+     * Maximum number of questions in flight.
+     */
+    private final int capacity;
+
+    AnalysisPipeline(QuestionAnalyzer analyzer, Iterable<String> questions, int threads) {
+        this.analyzer = analyzer;
+        this.questions = questions.iterator();
+        this.workers = Executors.newFixedThreadPool(threads, new WorkerFactory());
+        this.capacity = 2 * threads;
+        fill();
+    }
+
+    private void fill() {
+        while (pending.size() < capacity && questions.hasNext()) {
+            final String question = questions.next();
+            pending.add(workers.submit(new Callable<AnalyzedQuestion>() {
+
+                @Override
+                public AnalyzedQuestion call() {
+                    return analyzer.analyze(question, 0);
+                }
+            }));
+        }
+        if (pending.isEmpty()) {
+            workers.shutdown();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public AnalyzedQuestion next() {
+        Future<AnalyzedQuestion> head = pending.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        fill();
+        try {
+            return head.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while analyzing questions.", ie);
+        } catch (ExecutionException ee) {
+            close();
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new IllegalStateException("Unable to analyze question.", ee.getCause());
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the workers, discarding any questions still in flight. Only
+     * needed if the pipeline is abandoned before being fully consumed.
+     */
+    public void close() {
+        pending.clear();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns the time spent so far in each stage of the analysis.
+     */
+    public AnalysisStatistics getStatistics() {
+        return analyzer.getStatistics();
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final int pool = poolNumber.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "question-analyzer-" + pool + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package l2f.interpretation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AnalysisStatistics accumulates the time spent in each stage of the
+ * question analysis. It can be shared by several threads.
+ */
+public class AnalysisStatistics {
+
+    /**
+     * Stages of the analysis, in the order in which they are applied.
+     */
+    public enum Stage {
+
+        TOKENIZE,
+        TAG,
+        PARSE,
+        FOCUS,
+        LEXICON
+    }
+    /**
+     * Total time spent in each stage, in nanoseconds.
+     */
+    private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+    /**
+     * Number of questions that went through each stage.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(Stage.values().length);
+    /**
+     * Number of questions that were not parsed in time.
+     */
+    private final AtomicLong shallow = new AtomicLong();
+
+    public void record(Stage stage, long elapsedNanos) {
+        nanos.addAndGet(stage.ordinal(), elapsedNanos);
+        counts.incrementAndGet(stage.ordinal());
+    }
+
+    /**
+     * Counts a question that was only analyzed shallowly, because it was
+     * not parsed in time.
+     */
+    public void recordShallow() {
+        shallow.incrementAndGet();
+    }
+
+    public long getShallowCount() {
+        return shallow.get();
+    }
+
+    /**
+     * Returns the total time spent in <code>stage</code>, in milliseconds.
+     */
+    public long getTotalMillis(Stage stage) {
+        return nanos.get(stage.ordinal()) / 1000000L;
+    }
+
+    /**
+     * Returns the average time spent in <code>stage</code> per question,
+     * in milliseconds.
+     */
+    public double getAverageMillis(Stage stage) {
+        long count = counts.get(stage.ordinal());
+        return count == 0 ? 0.0 : nanos.get(stage.ordinal()) / (count * 1000000.0);
+    }
+
+    public void reset() {
+        for (int i = 0; i < nanos.length(); i++) {
+            nanos.set(i, 0);
+            counts.set(i, 0);
+        }
+        shallow.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(stage.name().toLowerCase()).append(": ")
+                    .append(getTotalMillis(stage)).append(" ms (")
+                    .append(String.format("%.2f", getAverageMillis(stage))).append(" ms/question)");
+        }
+        if (shallow.get() > 0) {
+            sb.append(", shallow: ").append(shallow.get()).append(" questions");
+        }
+        return sb.toString();
+    }
+}
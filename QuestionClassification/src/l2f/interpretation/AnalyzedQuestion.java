@@ -4,6 +4,8 @@ import java.util.List;
 
 import edu.berkeley.nlp.ling.Tree;
 
+import l2f.utils.Utils;
+
 /**
  * AnalyzedQuestion is a mutable class used to gather information that is
  * acquired after applying several NLP processing tools over the original
@@ -21,7 +23,8 @@ public class AnalyzedQuestion {
      */
     private Tree<String> parseTree;
     /**
-     * String representation of the parse tree of the question.
+     * String representation of the parse tree of the question, only built
+     * when requested.
      */
     private String parseTreeString;
     /**
@@ -50,6 +53,17 @@ public class AnalyzedQuestion {
      * questions about acronyms and counts.
      */
     private String defWord;
+    /**
+     * Category found by the <code>QuestionPatternFinder</code> (empty if no
+     * pattern matched), or null if the patterns were not applied yet.
+     */
+    private String patternCategory;
+    /**
+     * Whether the question was not parsed in time, so that it has no parse
+     * tree, its POS tags are the most likely of each word, and its headword
+     * was found by a heuristic.
+     */
+    private boolean shallow;
     /**
      * Creates a new instance of AnalyzedQuestion.
      * @param question original question
@@ -66,19 +80,42 @@ public class AnalyzedQuestion {
 
     public void setOriginalQuestion(String originalQuestion) {
         this.originalQuestion = originalQuestion;
+        this.patternCategory = null;
     }
 
+    /**
+     * Returns the parse tree of the question. If the question was restored
+     * from its string representation (see {@link #setParseTreeString}), the
+     * tree is only rebuilt when first requested.
+     */
     public Tree<String> getParseTree() {
+        if (parseTree == null && parseTreeString != null) {
+            parseTree = Utils.parseTree(parseTreeString);
+        }
         return parseTree;
     }
 
     public String getParseTreeString() {
+        if (parseTreeString == null && parseTree != null) {
+            parseTreeString = parseTree.toString();
+        }
         return parseTreeString;
     }
 
     public void setParseTree(Tree<String> parseTree) {
         this.parseTree = parseTree;
-        this.parseTreeString = parseTree.toString();
+        this.parseTreeString = null;
+        this.patternCategory = null;
+    }
+
+    /**
+     * Sets the parse tree of the question from its string representation,
+     * as returned by {@link #getParseTreeString}.
+     */
+    public void setParseTreeString(String parseTreeString) {
+        this.parseTree = null;
+        this.parseTreeString = parseTreeString;
+        this.patternCategory = null;
     }
 
     public List<String> getTokens() {
@@ -87,6 +124,7 @@ public class AnalyzedQuestion {
 
     public void setTokens(List<String> tokens) {
         this.tokens = tokens;
+        this.patternCategory = null;
     }
 
     public List<String> getPosTags() {
@@ -137,6 +175,31 @@ public class AnalyzedQuestion {
         return defWord;
     }
 
+    /**
+     * Returns the category found by the <code>QuestionPatternFinder</code>
+     * (empty if no pattern matched), or null if the patterns were not
+     * applied since the question, tokens or parse tree were last set.
+     */
+    public String getPatternCategory() {
+        return patternCategory;
+    }
+
+    public void setPatternCategory(String patternCategory) {
+        this.patternCategory = patternCategory;
+    }
+
+    /**
+     * Returns whether this is a shallow analysis of the question, without a
+     * parse tree (see <code>QuestionAnalyzer.analyze</code>).
+     */
+    public boolean isShallow() {
+        return shallow;
+    }
+
+    public void setShallow(boolean shallow) {
+        this.shallow = shallow;
+    }
+
     public String getHeuristicForHeadwordExtaction() {
         return heuristicForHeadwordExtaction;
     }
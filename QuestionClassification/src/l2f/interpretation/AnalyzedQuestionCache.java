@@ -0,0 +1,324 @@
+package l2f.interpretation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import l2f.utils.ResourceLoadException;
+
+/**
+ * AnalyzedQuestionCache keeps the results of the question analysis on disk,
+ * keyed by the original question, so that questions that were already seen
+ * need not be tokenized, parsed and mapped again.
+ *
+ * The cache is an append-only binary file: a header with the fingerprint of
+ * the resources used in the analysis (see {@link #fingerprint}), followed by
+ * one record per question. The file is memory-mapped when the cache is
+ * opened, and records are only decoded on lookup. If the fingerprint does not
+ * match, the file is discarded and rebuilt as questions are analyzed.
+ *
+ * Lookups may be done concurrently; each one returns a new
+ * <code>AnalyzedQuestion</code>.
+ */
+public class AnalyzedQuestionCache {
+
+    private static final int MAGIC = 0x41514331; // "AQC1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final String ENCODING = "UTF-8";
+
+    private final File file;
+    /**
+     * Encoded records, by original question. Records read from the file are
+     * slices of the mapped buffer.
+     */
+    private final ConcurrentMap<String, ByteBuffer> records = new ConcurrentHashMap<String, ByteBuffer>();
+    /**
+     * File the new records are appended to, or null if the cache could not
+     * be written.
+     */
+    private RandomAccessFile out;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens (or creates) the cache stored in <code>filename</code>.
+     *
+     * @param filename cache file
+     * @param fingerprint fingerprint of the resources used to analyze the
+     * questions in the cache
+     */
+    public AnalyzedQuestionCache(String filename, long fingerprint) {
+        this.file = new File(filename);
+        try {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            this.out = new RandomAccessFile(file, "rw");
+            long end = load(fingerprint);
+            if (end < 0) {
+                out.setLength(0);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fingerprint);
+            } else {
+                // drops an incomplete record left by an interrupted run
+                out.setLength(end);
+                out.seek(end);
+            }
+        } catch (IOException ioe) {
+            throw new ResourceLoadException("Couldn't load AnalyzedQuestionCache.", ioe);
+        }
+    }
+
+    /**
+     * Maps the cache file and indexes its records.
+     *
+     * @return the offset after the last complete record, or -1 if the file
+     * is empty or was built with other resources
+     */
+    private long load(long fingerprint) throws IOException {
+        FileChannel channel = out.getChannel();
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            return -1;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != fingerprint) {
+            System.err.println("Discarding stale question analysis cache: " + file + ".");
+            return -1;
+        }
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            buffer.position(buffer.position() + length);
+            records.put(readString(record.duplicate()), record);
+        }
+        System.out.println("Loaded " + records.size() + " analyzed questions from " + file + ".");
+        return buffer.position();
+    }
+
+    /**
+     * Returns the cached analysis of <code>question</code>, or null if it is
+     * not in the cache.
+     */
+    public AnalyzedQuestion get(String question) {
+        ByteBuffer record = records.get(question);
+        if (record == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        try {
+            return decode(record.duplicate());
+        } catch (UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /**
+     * Adds an analyzed question to the cache, appending it to the cache file.
+     */
+    public void put(AnalyzedQuestion aq) {
+        if (records.containsKey(aq.getOriginalQuestion())) {
+            return;
+        }
+        byte[] record;
+        try {
+            record = encode(aq);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        if (records.putIfAbsent(aq.getOriginalQuestion(), ByteBuffer.wrap(record)) != null) {
+            return;
+        }
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeInt(record.length);
+                out.write(record);
+            } catch (IOException ioe) {
+                System.err.println("Unable to write to question analysis cache " + file + ": " + ioe.getMessage());
+                close();
+            }
+        }
+    }
+
+    /**
+     * Closes the cache file. Questions can still be looked up afterwards,
+     * but new ones are no longer stored on disk.
+     */
+    public synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ioe) {
+                // nothing left to do
+            }
+            out = null;
+        }
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return records.size() + " questions, " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+
+    /**
+     * Computes the fingerprint of the resources that determine the result
+     * of the question analysis: the contents of the parser grammar and of
+     * the lexicon map, and any other settings (such as the tokenizer type).
+     *
+     * @param files resource files
+     * @param settings other settings
+     */
+    public static long fingerprint(String[] files, String... settings) {
+        CRC32 crc = new CRC32();
+        byte[] buf = new byte[64 * 1024];
+        for (String filename : files) {
+            FileInputStream in = null;
+            try {
+                in = new FileInputStream(filename);
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    crc.update(buf, 0, n);
+                }
+            } catch (IOException ioe) {
+                throw new ResourceLoadException("Couldn't read " + filename + ".", ioe);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ioe) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        long fingerprint = crc.getValue();
+        crc.reset();
+        for (String setting : settings) {
+            byte[] bytes = String.valueOf(setting).getBytes();
+            crc.update(bytes, 0, bytes.length);
+            crc.update(0);
+        }
+        return (fingerprint << 32) ^ crc.getValue();
+    }
+
+    /*
+     * Record layout: question, tokens, POS tags, parse tree, headword,
+     * headword synonyms, compound headword, lexicon target, heuristic,
+     * definition word and pattern category.
+     * Strings are a byte length (-1 for null) followed by UTF-8 bytes; lists
+     * are an element count (-1 for null) followed by the strings. Integers
+     * are big-endian, as written by DataOutputStream and read by ByteBuffer.
+     */
+    private static byte[] encode(AnalyzedQuestion aq) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        DataOutputStream record = new DataOutputStream(bytes);
+        writeString(record, aq.getOriginalQuestion());
+        writeList(record, aq.getTokens());
+        writeList(record, aq.getPosTags());
+        writeString(record, aq.getParseTreeString());
+        writeString(record, aq.getHeadword());
+        writeList(record, aq.getHeadwordSynonyms());
+        writeString(record, aq.getCompoundHeadword());
+        writeString(record, aq.getHeadwordLexiconTarget());
+        writeString(record, aq.getHeuristicForHeadwordExtaction());
+        writeString(record, aq.getDefWord());
+        writeString(record, aq.getPatternCategory());
+        record.flush();
+        return bytes.toByteArray();
+    }
+
+    private static AnalyzedQuestion decode(ByteBuffer record) throws UnsupportedEncodingException {
+        AnalyzedQuestion aq = new AnalyzedQuestion(readString(record));
+        aq.setTokens(readList(record));
+        aq.setPosTags(readList(record));
+        aq.setParseTreeString(readString(record));
+        aq.setHeadword(readString(record));
+        aq.setHeadwordSynonyms(readList(record));
+        aq.setCompoundHeadword(readString(record));
+        aq.setHeadwordLexiconTarget(readString(record));
+        aq.setHeuristicForHeadwordExtaction(readString(record));
+        aq.setDefWord(readString(record));
+        aq.setPatternCategory(readString(record));
+        return aq;
+    }
+
+    private static void writeString(DataOutputStream record, String s) throws IOException {
+        if (s == null) {
+            record.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(ENCODING);
+        record.writeInt(bytes.length);
+        record.write(bytes);
+    }
+
+    private static void writeList(DataOutputStream record, List<String> list) throws IOException {
+        if (list == null) {
+            record.writeInt(-1);
+            return;
+        }
+        record.writeInt(list.size());
+        for (String s : list) {
+            writeString(record, s);
+        }
+    }
+
+    private static String readString(ByteBuffer record) throws UnsupportedEncodingException {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, ENCODING);
+    }
+
+    private static List<String> readList(ByteBuffer record) throws UnsupportedEncodingException {
+        int size = record.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString(record));
+        }
+        return list;
+    }
+}
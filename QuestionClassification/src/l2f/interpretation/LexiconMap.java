@@ -1,11 +1,20 @@
 package l2f.interpretation;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.zip.CRC32;
 
+import l2f.config.Config;
+import l2f.interpretation.classification.QuestionCategory;
+import l2f.utils.LongIntMap;
 import l2f.utils.ResourceLoadException;
 import l2f.utils.Utils;
 
@@ -16,14 +25,51 @@ import com.aliasi.util.Streams;
  * LexiconMap is used to map Lexicon keys (offsets) into question categories.
  * A typical use is for WordNet, wherein each offset corresponds to a synset,
  * or synonym set.
+ *
+ * Since it is looked up for every hypernym visited, offsets are kept in a
+ * primitive long-to-int map, with the categories stored as
+ * <code>QuestionCategory</code> ordinals.
+ *
+ * The map can also be saved as a binary snapshot, which is loaded instead
+ * of parsing the XML file as long as it was made from the same file.
  */
-public class LexiconMap extends HashMap<Long, String> {
+public class LexiconMap {
+
+    private static final int MAGIC = 0x4C584D31; // "LXM1"
+    private static final int VERSION = 1;
+    private static final QuestionCategory[] CATEGORIES = QuestionCategory.values();
+    private LongIntMap categories = new LongIntMap(256, -1);
 
     public LexiconMap(String filename) {
         File file = Utils.checkInputFile(filename);
         loadMap(file);
     }
 
+    /**
+     * Loads the map from the snapshot <code>snapshotFilename</code>, or
+     * from <code>filename</code> if the snapshot is missing or was made from
+     * a different file (in which case the snapshot is rewritten). An empty
+     * <code>snapshotFilename</code> disables snapshots.
+     */
+    public LexiconMap(String filename, String snapshotFilename) {
+        File file = Utils.checkInputFile(filename);
+        if (snapshotFilename.length() == 0) {
+            loadMap(file);
+            return;
+        }
+        File snapshot = new File(snapshotFilename);
+        long fingerprint = fingerprint(file);
+        if (snapshot.exists() && loadSnapshot(snapshot, fingerprint)) {
+            return;
+        }
+        loadMap(file);
+        try {
+            saveSnapshot(snapshot, fingerprint);
+        } catch (IOException ioe) {
+            System.err.println("Couldn't save LexiconMap snapshot " + snapshotFilename + ": " + ioe.getMessage());
+        }
+    }
+
     @SuppressWarnings("deprecation")
     private void loadMap(File file) {
         LexiconMapParser parser = new LexiconMapParser();
@@ -31,7 +77,9 @@ public class LexiconMap extends HashMap<Long, String> {
 
             @Override
             public void handle(Map<Long, String> out) {
-                putAll(out);
+                for (Map.Entry<Long, String> entry : out.entrySet()) {
+                    put(entry.getKey(), entry.getValue());
+                }
             }
         });
         FileInputStream inputStream = null;
@@ -45,5 +93,132 @@ public class LexiconMap extends HashMap<Long, String> {
             Streams.closeInputStream(inputStream);
         }
     }
-    private static final long serialVersionUID = 1936957942132058888L;
+
+    /**
+     * Fingerprint of the XML file and of the category names, whose ordinals
+     * are saved in the snapshot.
+     */
+    private static long fingerprint(File file) {
+        CRC32 crc = new CRC32();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, n);
+            }
+        } catch (IOException ioe) {
+            throw new ResourceLoadException("Couldn't load LexiconMap.", ioe);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+        for (QuestionCategory category : CATEGORIES) {
+            byte[] bytes = category.name().getBytes();
+            crc.update(bytes, 0, bytes.length);
+        }
+        return crc.getValue();
+    }
+
+    /*
+     * Snapshot: magic, version, fingerprint, and the entries of the
+     * LongIntMap (see LongIntMap.write).
+     */
+    private boolean loadSnapshot(File snapshot, long fingerprint) {
+        try {
+            RandomAccessFile raf = new RandomAccessFile(snapshot, "r");
+            try {
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+                if (buffer.remaining() < 16 || buffer.getInt() != MAGIC
+                        || buffer.getInt() != VERSION || buffer.getLong() != fingerprint) {
+                    return false;
+                }
+                categories = LongIntMap.read(buffer);
+                return true;
+            } finally {
+                raf.close();
+            }
+        } catch (Exception e) {
+            // unreadable or truncated, reload the XML file
+            System.err.println("Ignoring LexiconMap snapshot " + snapshot + ": " + e);
+            categories = new LongIntMap(256, -1);
+            return false;
+        }
+    }
+
+    private void saveSnapshot(File snapshot, long fingerprint) throws IOException {
+        if (snapshot.getParentFile() != null) {
+            snapshot.getParentFile().mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshot)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            categories.write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the category name <code>offset</code> is mapped to, or null.
+     */
+    public String get(long offset) {
+        QuestionCategory category = getCategory(offset);
+        return category == null ? null : category.name();
+    }
+
+    /**
+     * Returns the category <code>offset</code> is mapped to, or null.
+     */
+    public QuestionCategory getCategory(long offset) {
+        int ordinal = categories.get(offset);
+        return ordinal < 0 ? null : CATEGORIES[ordinal];
+    }
+
+    public boolean containsKey(long offset) {
+        return categories.containsKey(offset);
+    }
+
+    /**
+     * Maps <code>offset</code> into <code>category</code>, which must be the
+     * name of a <code>QuestionCategory</code>.
+     *
+     * @return the category previously mapped from <code>offset</code>, or null
+     * @throws IllegalArgumentException if <code>category</code> is unknown
+     */
+    public String put(long offset, String category) {
+        int previous = categories.put(offset, QuestionCategory.getCategory(category).ordinal());
+        return previous < 0 ? null : CATEGORIES[previous].name();
+    }
+
+    public int size() {
+        return categories.size();
+    }
+
+    /**
+     * Returns the offsets in the map, in no particular order.
+     */
+    public long[] offsets() {
+        return categories.keys();
+    }
+
+    /**
+     * Writes the snapshot of the lexicon map set in the configuration file
+     * (config/config_en.xml, by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Config.parseConfig(args.length > 0 ? args[0] : "config/config_en.xml");
+        File file = Utils.checkInputFile(Config.questionAnalysis_lexiconmapFile);
+        LexiconMap map = new LexiconMap(Config.questionAnalysis_lexiconmapFile);
+        map.saveSnapshot(new File(Config.questionAnalysis_lexiconmapSnapshot), fingerprint(file));
+        System.out.println("Saved " + map.size() + " offsets to " + Config.questionAnalysis_lexiconmapSnapshot);
+    }
 }
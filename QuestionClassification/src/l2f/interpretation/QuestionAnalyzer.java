@@ -1,6 +1,7 @@
 package l2f.interpretation;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.aliasi.util.Pair;
 
@@ -11,8 +12,10 @@ import edu.berkeley.nlp.ling.Tree;
 import l2f.config.Config;
 import l2f.nlp.Lexicon;
 import l2f.nlp.LexiconFactory;
+import l2f.nlp.ParseTimeoutException;
 import l2f.nlp.Parser;
 import l2f.nlp.ParserFactory;
+import l2f.nlp.PosTagger;
 import l2f.nlp.Tokenizer;
 import l2f.nlp.TokenizerFactory;
 import l2f.nlp.TokenizerFactory.TokenizerType;
@@ -23,13 +26,31 @@ public class QuestionAnalyzer {
     private static final int CARDINATILITY = 32;
 
     /**
-     * Question tokenizer.
+     * Question tokenizer, one per thread.
      */
-    private final Tokenizer tokenizer;
+    private final ThreadLocal<Tokenizer> tokenizer = new ThreadLocal<Tokenizer>() {
+
+        @Override
+        protected Tokenizer initialValue() {
+            return TokenizerFactory.newTokenizer(TokenizerType.valueOf(Config.questionAnalysis_tokenizerType));
+        }
+    };
+    /**
+     * Parser used to infer the syntactic structure of the question, one per
+     * thread. Every instance shares the grammar loaded by <code>ParserFactory</code>.
+     */
+    private final ThreadLocal<Parser> parser = new ThreadLocal<Parser>() {
+
+        @Override
+        protected Parser initialValue() {
+            return ParserFactory.INSTANCE.newParser(Config.questionAnalysis_parserGrammarFile);
+        }
+    };
     /**
-     * Parser used to infer the syntactic structure of the question.
+     * POS tagger whose tags constrain the parser, or null if questions are
+     * parsed without POS constraints.
      */
-    private final Parser parser;
+    private final PosTagger tagger;
     /**
      * QuestionFocusExtractor used to determine the focus of the question.
      * @see QuestionFocusExtractor QuestionFocusExtractor
@@ -51,51 +72,180 @@ public class QuestionAnalyzer {
      */
     private boolean allsenses = false;
 
+    /**
+     * Fingerprint of the resources and settings that determine the result
+     * of the analysis.
+     */
+    private final long fingerprint;
+
+    /**
+     * Results of previous analyses, or null if no cache file is configured.
+     */
+    private final AnalyzedQuestionCache cache;
+
+    /**
+     * Time spent in each stage of the analysis.
+     */
+    private final AnalysisStatistics statistics = new AnalysisStatistics();
+
     /**
      * Instantiates a Question Analyzer, using language specific
      * configurations.
      */
     public QuestionAnalyzer() {
-        this.tokenizer = TokenizerFactory.newTokenizer(TokenizerType.valueOf(Config.questionAnalysis_tokenizerType));
-        this.parser = ParserFactory.INSTANCE.getParser(Config.questionAnalysis_parserGrammarFile);
-        this.focusExtractor = new QuestionFocusExtractor();
-        this.lexiconMap = new LexiconMap(Config.questionAnalysis_lexiconmapFile);
-        this.lexicon = LexiconFactory.INSTANCE.getLexicon();
-
+        this(false);
     }
 
     public QuestionAnalyzer(boolean allsenses) {
-        this.tokenizer = TokenizerFactory.newTokenizer(TokenizerType.valueOf(Config.questionAnalysis_tokenizerType));
-        this.parser = ParserFactory.INSTANCE.getParser(Config.questionAnalysis_parserGrammarFile);
+        // loads the grammar up front; each thread derives its own parser from it
+        ParserFactory.INSTANCE.getParser(Config.questionAnalysis_parserGrammarFile);
+        if (Config.nlp_taggerModelFile.length() > 0) {
+            this.tagger = PosTagger.load(Config.nlp_taggerModelFile, Config.questionAnalysis_parserGrammarFile,
+                    Config.classification_trainDir, TokenizerType.valueOf(Config.questionAnalysis_tokenizerType));
+        } else {
+            this.tagger = null;
+        }
         this.focusExtractor = new QuestionFocusExtractor();
-        this.lexiconMap = new LexiconMap(Config.questionAnalysis_lexiconmapFile);
+        this.lexiconMap = new LexiconMap(Config.questionAnalysis_lexiconmapFile, Config.questionAnalysis_lexiconmapSnapshot);
         this.lexicon = LexiconFactory.INSTANCE.getLexicon();
         this.allsenses = allsenses;
+        String[] files = tagger == null
+                ? new String[]{Config.questionAnalysis_parserGrammarFile, Config.questionAnalysis_lexiconmapFile}
+                : new String[]{Config.questionAnalysis_parserGrammarFile, Config.questionAnalysis_lexiconmapFile, Config.nlp_taggerModelFile};
+        this.fingerprint = AnalyzedQuestionCache.fingerprint(files,
+                Config.questionAnalysis_tokenizerType, Config.nlp_wordnetProperties, Config.nlp_lexiconType, String.valueOf(allsenses),
+                tagger == null ? "" : String.valueOf(Config.nlp_taggerMinMargin));
+        if (Config.questionAnalysis_cacheFile.length() > 0) {
+            this.cache = new AnalyzedQuestionCache(Config.questionAnalysis_cacheFile, fingerprint);
+        } else {
+            this.cache = null;
+        }
     }
 
     /**
      * Analyzes the original question, returning a container
      * that holds all the information that was gathered, namely,
      * question tokens, parse tree, POS tags, and headword.
+     * This method is thread-safe: each thread tokenizes and parses with its
+     * own tokenizer and parser instances.
+     * If a cache file is configured, questions that were already analyzed
+     * with the same resources are read from the cache instead.
+     * The question is parsed within <code>Config.nlp_parserTimeout</code>
+     * milliseconds, if set (see {@link #analyze(String, long)}).
      *
      * @param question
      * @return an analyzed question
      */
     public AnalyzedQuestion analyze(String question) {
+        return analyze(question, Config.nlp_parserTimeout);
+    }
+
+    /**
+     * Analyzes the original question, giving up on parsing it if the
+     * analysis takes longer than <code>timeout</code> milliseconds. In that
+     * case a shallow analysis is returned instead: the question is only
+     * POS tagged, and its headword is the first noun after the wh-word (see
+     * <code>AnalyzedQuestion.isShallow</code>). Shallow analyses are not
+     * cached.
+     *
+     * @param question
+     * @param timeout maximum time to analyze the question, in milliseconds,
+     * or 0 for no limit
+     * @return an analyzed question
+     */
+    public AnalyzedQuestion analyze(String question, long timeout) {
+        if (cache == null) {
+            return analyzeUncached(question, timeout);
+        }
+        AnalyzedQuestion aq = cache.get(question);
+        if (aq == null) {
+            aq = analyzeUncached(question, timeout);
+            if (!aq.isShallow()) {
+                cache.put(aq);
+            }
+        }
+        return aq;
+    }
+
+    private AnalyzedQuestion analyzeUncached(String question, long timeout) {
         AnalyzedQuestion aq = new AnalyzedQuestion(question);
+        long start = System.nanoTime();
         List<String> tokens = tokenize(question);
-        Tree<String> parse = parse(tokens);
-        List<String> tags = tag(parse);
+        long tokenized = System.nanoTime();
+        statistics.record(AnalysisStatistics.Stage.TOKENIZE, tokenized - start);
+
+        // the tagger's tags constrain the parser, unless it is unsure of any
+        List<String> constraints = null;
+        long tagged = tokenized;
+        if (tagger != null) {
+            constraints = tagger.tag(tokens, Config.nlp_taggerMinMargin);
+            tagged = System.nanoTime();
+            statistics.record(AnalysisStatistics.Stage.TAG, tagged - tokenized);
+        }
+
+        Tree<String> parse = null;
+        if (timeout <= 0) {
+            parse = constraints == null ? parse(tokens) : parse(tokens, constraints);
+        } else {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeout) - (tagged - start);
+            try {
+                if (remaining > 0) {
+                    parse = parse(tokens, constraints, remaining, TimeUnit.NANOSECONDS);
+                }
+            } catch (ParseTimeoutException e) {
+                // falls back to a shallow analysis
+            }
+        }
         aq.setTokens(tokens);
-        aq.setPosTags(tags);
-        aq.setParseTree(parse);
+        if (parse != null) {
+            aq.setPosTags(tag(parse));
+            aq.setParseTree(parse);
+        } else {
+            aq.setPosTags(constraints != null ? constraints : tag(tokens));
+            aq.setShallow(true);
+            statistics.recordShallow();
+        }
+        long parsed = System.nanoTime();
+        statistics.record(AnalysisStatistics.Stage.PARSE, parsed - tagged);
 
         String headword = focusExtractor.extract(aq);
+        long focused = System.nanoTime();
+        statistics.record(AnalysisStatistics.Stage.FOCUS, focused - parsed);
         if (headword != null && headword.indexOf("#QP#") != -1) {
             aq.setHeadword("");
             aq.setHeadwordLexiconTarget(headword.replaceFirst("#QP#", ""));
             return aq;
         }
+        mapHeadword(aq, headword);
+        statistics.record(AnalysisStatistics.Stage.LEXICON, System.nanoTime() - focused);
+        return aq;
+    }
+
+    /**
+     * Analyzes a batch of questions concurrently, using a pool of
+     * <code>Config.questionAnalysis_threads</code> workers (one per available
+     * processor, if not set). Questions are read from <code>questions</code>
+     * only as results are consumed, and results are returned in input order.
+     * Unlike {@link #analyze(String)}, questions are parsed without a
+     * timeout, so that training and test corpora are always fully parsed.
+     *
+     * @param questions questions to be analyzed
+     * @return the analyzed questions, in the same order as <code>questions</code>
+     */
+    public AnalysisPipeline analyzeAll(Iterable<String> questions) {
+        int threads = Config.questionAnalysis_threads > 0
+                ? Config.questionAnalysis_threads
+                : Runtime.getRuntime().availableProcessors();
+        return new AnalysisPipeline(this, questions, threads);
+    }
+
+    /**
+     * Maps the headword (or compound headword) of the question into a
+     * category of the <code>LexiconMap</code>.
+     */
+    private void mapHeadword(AnalyzedQuestion aq, String headword) {
+        List<String> tokens = aq.getTokens();
+        List<String> tags = aq.getPosTags();
         aq.setHeadword(headword);
         aq.setHeadwordSynonyms(lexicon.getSynonyms(headword));
 
@@ -119,7 +269,7 @@ public class QuestionAnalyzer {
                 String wnPos = Utils.pennPOSToWordnetPOS(posHeadword);
                 if (wnPos == null) {
                     System.err.println("Extracted a Non NN Headword: " + posHeadword + "-"+ headword + ".");
-                    return aq;
+                    return;
                 }
                 Pair<Long, String> pair = lexicon.intersectMap(headword,
                         POS.getPOSForLabel(wnPos),
@@ -131,23 +281,75 @@ public class QuestionAnalyzer {
                 }
             }
         }
-        return aq;
+    }
+
+    /**
+     * Returns the time spent so far in each stage of the analysis.
+     */
+    public AnalysisStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the fingerprint of the grammar, lexicon map and analysis
+     * settings (including whether all senses are used), which changes
+     * whenever the analysis of a question may change.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public boolean isAllsenses() {
+        return allsenses;
+    }
+
+    /**
+     * Returns the cache of analyzed questions, or null if none is used.
+     */
+    public AnalyzedQuestionCache getCache() {
+        return cache;
     }
 
     public List<String> tokenize(String question) {
-        return tokenizer.tokenize(question);
+        return tokenizer.get().tokenize(question);
     }
 
     public List<String> tag(Tree<String> tree) {
         return tree.getPreTerminalYield();
     }
 
+    /**
+     * Tags each token with its most likely part-of-speech, without parsing
+     * the question. Uses the POS tagger, if configured, or else the most
+     * likely tag of each word in the parser's lexicon.
+     */
+    public List<String> tag(List<String> tokens) {
+        return tagger != null ? tagger.tag(tokens) : parser.get().tag(tokens);
+    }
+
     public Tree<String> parse(List<String> tokens, List<String> tags) {
-        return parser.getBestParse(tokens, tags);
+        return parser.get().getBestParse(tokens, tags);
     }
 
     public Tree<String> parse(List<String> tokens) {
-        return parser.getBestParse(tokens);
+        return parser.get().getBestParse(tokens);
+    }
+
+    /**
+     * Parses the tokens, throwing a <code>ParseTimeoutException</code> if
+     * the parse takes longer than <code>timeout</code>.
+     */
+    public Tree<String> parse(List<String> tokens, long timeout, TimeUnit unit) {
+        return parser.get().getBestParse(tokens, timeout, unit);
+    }
+
+    /**
+     * Parses the tokens constrained to the given tags, if not null,
+     * throwing a <code>ParseTimeoutException</code> if the parse takes
+     * longer than <code>timeout</code>.
+     */
+    public Tree<String> parse(List<String> tokens, List<String> tags, long timeout, TimeUnit unit) {
+        return parser.get().getBestParse(tokens, tags, timeout, unit);
     }
 
     public int cardinality(List<String> tokens, List<String> tags, String headword) {
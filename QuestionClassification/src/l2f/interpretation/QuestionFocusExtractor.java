@@ -3,9 +3,13 @@ package l2f.interpretation;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import l2f.config.Config;
 import l2f.nlp.CompoundWordExtractor;
+import l2f.nlp.CompoundWordIndex;
+import l2f.nlp.HypernymIndex;
 import l2f.nlp.LexiconFactory;
 import l2f.nlp.QuestionHeadFinder;
+import l2f.utils.ResourceLoadException;
 import l2f.utils.Utils;
 import edu.berkeley.nlp.ling.HeadFinder;
 import edu.berkeley.nlp.ling.Tree;
@@ -40,7 +44,15 @@ public class QuestionFocusExtractor {
 
 	public QuestionFocusExtractor() {
 		this.questionHeadFinder = new QuestionHeadFinder();
-		this.compoundWordExtractor = new CompoundWordExtractor(LexiconFactory.INSTANCE.getLexicon());
+		try {
+			this.compoundWordExtractor = new CompoundWordExtractor(CompoundWordIndex.getInstance(
+					HypernymIndex.getDictionaryPath(Config.nlp_wordnetProperties)));
+		} catch (ResourceLoadException rle) {
+			// look compound words up in the lexicon instead
+			System.err.println("QuestionFocusExtractor: " + rle.getMessage() + " " + rle.getCause().getMessage()
+					+ " Using the lexicon for compound words.");
+			this.compoundWordExtractor = new CompoundWordExtractor(LexiconFactory.INSTANCE.getLexicon());
+		}
 	}
 
 	public String extract(AnalyzedQuestion question) {
@@ -48,8 +60,11 @@ public class QuestionFocusExtractor {
 		if (!questionFocus.isEmpty()) {
 			return "#QP#" + questionFocus;
 		}
+		if (question.isShallow()) {
+			return extractShallow(question);
+		}
 		if (questionFocus.isEmpty()) {
-			if (question.getParseTreeString().equals("(ROOT)") || question.getParseTree().isLeaf() || question.getParseTree().isLeaf()) {
+			if (question.getParseTree().isLeaf()) {
 				System.err.println("*******");
 				System.err.println(question.getOriginalQuestion());
 				System.err.flush();
@@ -84,6 +99,42 @@ public class QuestionFocusExtractor {
 		return questionFocus;
 	}
 
+	/**
+	 * Extracts the focus of a question that has no parse tree: the last noun
+	 * of the first run of nouns after the wh-word (or from the start of the
+	 * question, if it has none), as a compound word if possible.
+	 */
+	private String extractShallow(AnalyzedQuestion question) {
+		List<String> tokens = question.getTokens();
+		List<String> tags = question.getPosTags();
+		int i = 0;
+		while (i < tags.size() && !tags.get(i).startsWith("W")) {
+			i++;
+		}
+		if (i == tags.size()) {
+			i = 0;
+		}
+		while (i < tags.size() && !tags.get(i).startsWith("NN")) {
+			i++;
+		}
+		if (i == tags.size()) {
+			question.setHeuristicForHeadwordExtaction("shallow, no headword");
+			return null;
+		}
+		while (i + 1 < tags.size() && tags.get(i + 1).startsWith("NN")) {
+			i++;
+		}
+		String headword = tokens.get(i);
+		String compound = this.compoundWordExtractor.tryGetCompoundWord(tokens, tags, headword);
+		if (!compound.equals(headword)) {
+			question.setCompoundHeadword(compound);
+			question.setHeuristicForHeadwordExtaction("shallow compound (" + headword + "," + compound + ")");
+		} else {
+			question.setHeuristicForHeadwordExtaction("shallow single (" + headword + ")");
+		}
+		return headword;
+	}
+
 	/**
 	 * Extract the focus of a given question.
 	 * First, tries to apply specific, hand-coded rules, to find the head word.
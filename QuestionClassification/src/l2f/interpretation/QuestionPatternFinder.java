@@ -7,7 +7,11 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import edu.berkeley.nlp.ling.Tree;
+
 import l2f.interpretation.classification.QuestionCategory;
+import l2f.nlp.TreePattern;
+import l2f.utils.AhoCorasick;
 import l2f.utils.Utils;
 
 public class QuestionPatternFinder {
@@ -32,28 +36,67 @@ public class QuestionPatternFinder {
     private static final String REASON_PLACEHOLDER = "" + QuestionCategory.DESCRIPTION_REASON;
     private static final String HUMAN_DESCRIPTION_PLACEHOLDER = "" + QuestionCategory.HUMAN_DESCRIPTION;
 
+    /**
+     * Literal words that the patterns below need in the question. All of
+     * them are looked for in a single pass over the question, and patterns
+     * whose words are missing are not tried.
+     */
+    private enum Anchor {
+
+        WHAT("what"),
+        STAND("stand"),
+        MEAN("mean"),
+        ACRONYM("acronym"),
+        ABBREVIATION("abbreviat"),
+        COMPOSED("composed"),
+        MADE("made"),
+        CALL("call"),
+        CAUSE("cause"),
+        USED("used"),
+        KNOWN("known"),
+        MOUNTAIN("ountai");
+        private final String word;
+
+        private Anchor(String word) {
+            this.word = word;
+        }
+
+        boolean in(long found) {
+            return (found & (1L << ordinal())) != 0;
+        }
+    }
+    private static final AhoCorasick ANCHORS;
+
+    static {
+        String[] words = new String[Anchor.values().length];
+        for (Anchor anchor : Anchor.values()) {
+            words[anchor.ordinal()] = anchor.word;
+        }
+        ANCHORS = new AhoCorasick(true, words);
+    }
     private static Pattern DEFINITION_B =
             Pattern.compile("What\\s+(?:(?:do)es)(.*)mean",
             Pattern.CASE_INSENSITIVE);
     /**
-     * Pattern A to identify definitions patterns. A more readable version:
-     * (ROOT (SBARQ (WHNP (WP What)) (SQ (VB[ZP] is/are) (NP (DT the/a/an) (NNP/JJ/NN/NNPS *)))(? ?)))
+     * Pattern A to identify definitions patterns (see <code>TreePattern</code>).
      * NOTE: "the" was at (DT *) originally, but was removed for causing too much noise
      */
-    private static Pattern DEFINITION_A_TREE =
-            Pattern.compile("\\(ROOT \\(SBARQ \\(WHNP \\(WP What\\)\\) "
-            + "\\(SQ \\(VB[ZP] (?:is|'s|are)\\) "
-            + "\\(NP(?: \\(DT (?:an?)\\))?(( \\((NNP?S?|JJ|FW) [^)]+\\))+)\\)\\)"
-            + "(?: \\([?.] [?.]\\))?\\)\\)",
-            Pattern.CASE_INSENSITIVE);
+    private static TreePattern DEFINITION_A_TREE =
+            TreePattern.compile("(ROOT (SBARQ (WHNP (WP What)) "
+            + "(SQ (VB[ZP] is|'s|are) "
+            + "(NP (DT an?)? @(NNP?S?|JJ|FW __)+)) "
+            + "([?.] [?.])?))");
     /**
-     * Pattern B to identify definitions patterns.
+     * Pattern B to identify definitions patterns, with and without a NP.
      */
-    private static Pattern DEFINITION_B_TREE =
-            Pattern.compile("\\(ROOT \\(S \\(VP \\(VB Define\\)"
-            + "(?: \\(NP(?: \\(DT (?:the|an?)\\))?)?(( \\((?:NNP?S?|JJ|FW) [^)]+\\))+)\\)\\)?"
-            + "(?: \\([?.] [?.]\\))?\\)\\)",
-            Pattern.CASE_INSENSITIVE);
+    private static TreePattern[] DEFINITION_B_TREE = {
+        TreePattern.compile("(ROOT (S (VP (VB Define) "
+        + "(NP (DT the|an?)? @(NNP?S?|JJ|FW __)+)) "
+        + "([?.] [?.])?))"),
+        TreePattern.compile("(ROOT (S (VP (VB Define) "
+        + "@(NNP?S?|JJ|FW __)+) "
+        + "([?.] [?.])?))")
+    };
     private static Pattern EXPANSION_A =
             Pattern.compile("What(?:'s|\\s+is)\\s+(?:\"|``)? *((\\p{javaUpperCase}\\.?)+) *(?:\"|'')?\\s*.?",
             Pattern.CASE_INSENSITIVE);
@@ -94,137 +137,188 @@ public class QuestionPatternFinder {
             Pattern.compile("What(?:'s|\\s+(?:is|are))\\s+.*(?:composed|made(?:\\s+out)?)\\s+of\\s*.?",
             Pattern.CASE_INSENSITIVE);
 
-    private static Pattern HUMAN_DESCRIPTION_A_TREE =
-            Pattern.compile("\\(ROOT \\(SBARQ \\(WHNP \\(WP Who\\)\\) "
-            + "\\(SQ \\(VB[ZD] (?:is|'s|was)\\) "
-            + "\\(NP(( \\(NNP?S? [^)]+\\))+)\\)\\)"
-            + "(?: \\([?.] [?.]\\))?\\)\\)",
-            Pattern.CASE_INSENSITIVE);
-    private static Pattern NUMERIC_COUNT_MANY_TREE =
-            Pattern.compile("\\(ROOT \\(SBARQ \\(WHNP (?:\\(WHNP )?\\(WHADJP \\(WRB How\\) \\(JJ many\\)\\).*?\\((?:NNS|NNPS) (.*?)\\)+", Pattern.CASE_INSENSITIVE);
-    private static Pattern NUMERIC_COUNT_MUCH_TREE =
-            Pattern.compile("\\(ROOT \\(SBARQ \\(WHNP \\(WHADJP \\(WRB How\\) "
-            + "\\(JJ much\\)\\) \\(?:NN (.*?)\\)", Pattern.CASE_INSENSITIVE);
+    private static TreePattern HUMAN_DESCRIPTION_A_TREE =
+            TreePattern.compile("(ROOT (SBARQ (WHNP (WP Who)) "
+            + "(SQ (VB[ZD] is|'s|was) "
+            + "(NP @(NNP?S? __)+)) "
+            + "([?.] [?.])?))");
+    /**
+     * Plural noun after "How many", with and without a nested WHNP.
+     */
+    private static TreePattern[] NUMERIC_COUNT_MANY_TREE = {
+        TreePattern.compile("(ROOT (SBARQ (WHNP (WHADJP (WRB How) (JJ many)) .. (NNS|NNPS @__) ...) ...) ...)"),
+        TreePattern.compile("(ROOT (SBARQ (WHNP (WHNP (WHADJP (WRB How) (JJ many)) .. (NNS|NNPS @__) ...) ...) ...) ...)")
+    };
+
+    /**
+     * Returns the words captured by the first of <code>patterns</code> that
+     * matches <code>tree</code>, or null if none does (or if there is no
+     * tree, in a shallow analysis).
+     */
+    private static String match(Tree<String> tree, TreePattern... patterns) {
+        if (tree == null) {
+            return null;
+        }
+        for (TreePattern pattern : patterns) {
+            List<Tree<String>> captures = pattern.match(tree);
+            if (captures != null) {
+                return TreePattern.yield(captures);
+            }
+        }
+        return null;
+    }
+    /**
+     * Returns the category found by the patterns for the question, setting
+     * its definition word. The patterns are only applied the first time,
+     * and the result is kept in the question for later calls (see
+     * <code>AnalyzedQuestion.getPatternCategory</code>).
+     * @param question
+     * @return the category, or an empty string if no pattern matched
+     */
+    public String find(AnalyzedQuestion question) {
+        String category = question.getPatternCategory();
+        if (category == null) {
+            category = applyPatterns(question);
+            question.setPatternCategory(category);
+        }
+        return category;
+    }
 
     /**
      * Attempts to match a list of patterns to the question.
      * NOTE: The order of the patterns is relevant!!!
+     * Patterns are only tried if the question has their anchors, which
+     * does not change the result. Tree patterns walk the parse tree.
      * @param question
      * @return
      */
-    public String find(AnalyzedQuestion question) {
+    private String applyPatterns(AnalyzedQuestion question) {
         String placeholder = Utils.EMPTY;
         List<String> tokens = question.getTokens();
-        String parseTree = question.getParseTreeString();
+        Tree<String> parseTree = question.getParseTree();
         String original = question.getOriginalQuestion();
+        long found = ANCHORS.find(original);
+        boolean what = Anchor.WHAT.in(found);
+        boolean mean = Anchor.MEAN.in(found);
+        boolean abbreviation = Anchor.ACRONYM.in(found) || Anchor.ABBREVIATION.in(found);
+        Matcher m;
         /*
          * ABREVIATION:EXPANSION
          */
-        Matcher m = EXPANSION_A.matcher(original);
-        if (m.matches()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return EXPANSION_PLACEHOLDER;
+        if (what) {
+            m = EXPANSION_A.matcher(original);
+            if (m.matches()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return EXPANSION_PLACEHOLDER;
+            }
         }
-
-        m = EXPANSION_B.matcher(original);
-        if (m.matches()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return EXPANSION_PLACEHOLDER;
-
+        if (what && Anchor.STAND.in(found)) {
+            m = EXPANSION_B.matcher(original);
+            if (m.matches()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return EXPANSION_PLACEHOLDER;
+            }
         }
-        m = EXPANSION_C.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return EXPANSION_PLACEHOLDER;
+        if (what && mean) {
+            m = EXPANSION_C.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return EXPANSION_PLACEHOLDER;
+            }
         }
-
-        m = EXPANSION_D.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return EXPANSION_PLACEHOLDER;
+        if (abbreviation) {
+            m = EXPANSION_D.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return EXPANSION_PLACEHOLDER;
+            }
         }
 
         /*
          * ABREVIATION:ABBREVIATION
          */
-        m = ABBREVIATION_A.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return placeholder;
+        if (what && abbreviation) {
+            m = ABBREVIATION_A.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return placeholder;
+            }
         }
-        m = ABBREVIATION_B.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return placeholder;
+        if (what && Anchor.ABBREVIATION.in(found)) {
+            m = ABBREVIATION_B.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return placeholder;
+            }
         }
-        m = ABBREVIATION_C.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
-            return placeholder;
+        if (what && abbreviation) {
+            m = ABBREVIATION_C.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
+                question.setDefWord(group);
+                return placeholder;
+            }
         }
         /*
          * DESCRIPTION:DEFINITION
          */
-        m = DEFINITION_A_TREE.matcher(parseTree);
-        if (m.matches()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
+        String words = match(parseTree, DEFINITION_A_TREE);
+        if (words != null) {
+            question.setDefWord(words);
             return DEFINITION_PLACEHOLDER;
         }
-        m = DEFINITION_B_TREE.matcher(parseTree);
-        if (m.matches()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
+        words = match(parseTree, DEFINITION_B_TREE);
+        if (words != null) {
+            question.setDefWord(words);
             return DEFINITION_PLACEHOLDER;
         }
-        m = DEFINITION_B.matcher(original);
-        if (m.lookingAt()) {
-            String group = m.group(1);
-            question.setDefWord(group.trim());
-            return DEFINITION_PLACEHOLDER;
+        if (what && mean) {
+            m = DEFINITION_B.matcher(original);
+            if (m.lookingAt()) {
+                String group = m.group(1);
+                question.setDefWord(group.trim());
+                return DEFINITION_PLACEHOLDER;
+            }
         }
         /*
          * ENTITY:SUBSTANCE
          */
-        if (SUBSTANCE_A.matcher(original).matches()) {
+        if (what && (Anchor.COMPOSED.in(found) || Anchor.MADE.in(found))
+                && SUBSTANCE_A.matcher(original).matches()) {
             return SUBSTANCE_PLACEHOLDER;
         }
-        if (TERM_A_LOOK_AT.matcher(original).lookingAt()) {
+        if (what && Anchor.CALL.in(found)
+                && TERM_A_LOOK_AT.matcher(original).lookingAt()) {
             return TERM_PLACEHOLDER;
         }
-        if (REASON_A_LOOK_AT.matcher(original).lookingAt()
-                || REASON_B.matcher(original).matches()) {
+        if (what && ((Anchor.CAUSE.in(found) && REASON_A_LOOK_AT.matcher(original).lookingAt())
+                || ((Anchor.USED.in(found) || Anchor.KNOWN.in(found)) && REASON_B.matcher(original).matches()))) {
             return REASON_PLACEHOLDER;
         }
         /*
          * HUMAN:DESCRIPTION
          */
-        m = HUMAN_DESCRIPTION_A_TREE.matcher(parseTree);
-        if (m.matches()) {
-            String group = m.group(1);
-            group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-            question.setDefWord(group);
+        words = match(parseTree, HUMAN_DESCRIPTION_A_TREE);
+        if (words != null) {
+            question.setDefWord(words);
             return HUMAN_DESCRIPTION_PLACEHOLDER;
         }
 
 
-        if (original.matches("^Where .*(M|m)ountai(n|ns) .*")) {
+        if (Anchor.MOUNTAIN.in(found) && original.matches("^Where .*(M|m)ountai(n|ns) .*")) {
             return QuestionCategory.LOCATION_MOUNTAIN + "";
         }
 
@@ -250,6 +344,9 @@ public class QuestionPatternFinder {
             return QuestionCategory.HUMAN_INDIVIDUAL + "";
         }
         /*CASOS HOW*/
+        if (!original.startsWith("How")) {
+            return placeholder;
+        }
         if (original.matches("^How do (you|I) say .*")) {
             return QuestionCategory.ENTITY_TERM + "";
         }
@@ -309,22 +406,14 @@ public class QuestionPatternFinder {
         }
 
         if (original.matches("^How many .*")) {
-            m = NUMERIC_COUNT_MANY_TREE.matcher(parseTree);
-            if (m.lookingAt()) {
-                String group = m.group(1);
-                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-                question.setDefWord(group);
+            words = match(parseTree, NUMERIC_COUNT_MANY_TREE);
+            if (words != null) {
+                question.setDefWord(words);
             }
             return QuestionCategory.NUMERIC_COUNT + "";
         }
 
         if (original.matches("^How much .*")) {
-            m = NUMERIC_COUNT_MUCH_TREE.matcher(parseTree);
-            if (m.lookingAt()) {
-                String group = m.group(1);
-                group = group.replaceAll("\\([^\\s]+\\s|\\)", "").trim();
-                question.setDefWord(group);
-            }
             return QuestionCategory.NUMERIC_COUNT + "";
         }
 
@@ -9,15 +9,26 @@ import com.aliasi.corpus.Parser;
 public class QuestionClassificationCorpus<E> extends 
 	DiskCorpus<ObjectHandler<E>> {
 
+	private final File trainDir;
+
 	public QuestionClassificationCorpus(
 			Parser<ObjectHandler<E>> parser,
 			File trainDir, File testDir) {
 		super(parser, trainDir, testDir);		
+		this.trainDir = trainDir;
 	}
 
 	public QuestionClassificationCorpus(
 			Parser<ObjectHandler<E>> parser,
 			File testDir) {
 		super(parser, null, testDir);		
+		this.trainDir = null;
+	}
+
+	/**
+	 * Returns the training directory, or null if there is none.
+	 */
+	public File getTrainDir() {
+		return trainDir;
 	}
 }
@@ -4,6 +4,9 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import l2f.interpretation.AnalyzedQuestion;
 import l2f.interpretation.InterpretedQuestion;
@@ -78,6 +81,11 @@ extends Parser<ObjectHandler<InterpretedQuestion>> {
 	}
 
 
+	/**
+	 * Parses a file of question classification instances. The questions
+	 * are analyzed concurrently by the <code>QuestionAnalyzer</code>, and
+	 * handed to the handler in the same order as they appear in the file.
+	 */
 	@Override
 	public void parse(InputSource is) throws IOException {
 		try {
@@ -85,33 +93,49 @@ extends Parser<ObjectHandler<InterpretedQuestion>> {
 			FileReader fr = new FileReader(fileName);
 			//avoiding hidden directories
 			if(fileName.contains("/.")){
+				fr.close();
 				return;
 			}
 			BufferedReader br = new BufferedReader(fr);
 
+			List<String> categories = new ArrayList<String>();
+			List<String> questions = new ArrayList<String>();
 			String line = "";
-			int lineNumber = 0;
-			while ((line = br.readLine()) != null) {
-				if (line.matches("[A-Z_]+ .*")) {
-					lineNumber++;
-					if (lineNumber % 100 == 0) {
-						System.out.println("Processing line " + lineNumber + ".");
+			try {
+				while ((line = br.readLine()) != null) {
+					if (line.matches("[A-Z_]+ .*")) {
+						line = stripComment(line);
+						int questionStart = line.indexOf(' ');
+						if (questionStart < 0) {
+							break;
+						}
+						String category = line.substring(0, questionStart).trim();
+						if (!this.finer) {
+							category = category.substring(0, category.indexOf(this.separator)).trim();
+						}
+						categories.add(category);
+						questions.add(line.substring(questionStart + 1).trim());
 					}
+				}
+			} finally {
+				br.close();
+			}
 
-					line = stripComment(line);
-					int questionStart = line.indexOf(' ');
-					if (questionStart < 0) {
-						return;
-					}
-					String category = line.substring(0, questionStart).trim();
-					if (!this.finer) {
-						category = category.substring(0, category.indexOf(this.separator)).trim();
-					}
-					final String question = line.substring(questionStart + 1).trim();
-					AnalyzedQuestion analyzedQuestion = this.questionAnalyzer.analyze(question);
-					InterpretedQuestion interpretedQuestion = new InterpretedQuestion(analyzedQuestion, QuestionCategory.valueOf(category));
-					getHandler().handle(interpretedQuestion);
+			int lineNumber = 0;
+			Iterator<AnalyzedQuestion> analyzedQuestions = this.questionAnalyzer.analyzeAll(questions);
+			while (analyzedQuestions.hasNext()) {
+				AnalyzedQuestion analyzedQuestion = analyzedQuestions.next();
+				String category = categories.get(lineNumber);
+				lineNumber++;
+				if (lineNumber % 100 == 0) {
+					System.out.println("Processing line " + lineNumber + ".");
 				}
+				InterpretedQuestion interpretedQuestion = new InterpretedQuestion(analyzedQuestion, QuestionCategory.valueOf(category));
+				getHandler().handle(interpretedQuestion);
+			}
+			System.out.println("Analyzed " + lineNumber + " questions (" + this.questionAnalyzer.getStatistics() + ").");
+			if (this.questionAnalyzer.getCache() != null) {
+				System.out.println("Question analysis cache: " + this.questionAnalyzer.getCache() + ".");
 			}
 		} catch (FileNotFoundException fnf) {
 			System.err.println(fnf.getMessage());
@@ -8,7 +8,11 @@ import java.util.Map;
 import l2f.interpretation.AnalyzedQuestion;
 
 import com.aliasi.classify.BaseClassifier;
+import com.aliasi.classify.Classification;
+import com.aliasi.classify.ConditionalClassification;
 import com.aliasi.classify.ConfusionMatrix;
+import com.aliasi.classify.ScoredClassification;
+import l2f.classifiers.ProbabilisticClassifier;
 import l2f.interpretation.InterpretedQuestion;
 
 /**
@@ -33,6 +37,13 @@ public class QuestionClassifier<E> implements Serializable {
         this.categories = categories;
     }
 
+    /**
+     * Returns the underlying classifier.
+     */
+    public BaseClassifier<E> getClassifier() {
+        return classifier;
+    }
+
     /**
      * Classifies a single question.
      * @param instance the question to be classified
@@ -42,6 +53,39 @@ public class QuestionClassifier<E> implements Serializable {
         return classifier.classify(instance).bestCategory();
     }
 
+    /**
+     * Classifies a single question, returning its <code>k</code> most likely
+     * categories ranked by their estimated probability.
+     *
+     * The probabilities come from the classifier if it estimates them (see
+     * <code>ProbabilisticClassifier</code>) or its classifications carry
+     * them; otherwise, the best category is returned alone, with
+     * probability 1.
+     * @param instance the question to be classified
+     * @param k maximum number of categories to return
+     * @return the top categories, with their probabilities as scores
+     */
+    public ScoredClassification classifyTopK(E instance, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Invalid number of categories: " + k);
+        }
+        Classification classification = classifier instanceof ProbabilisticClassifier
+                ? ((ProbabilisticClassifier<E>) classifier).classifyProbabilities(instance)
+                : classifier.classify(instance);
+        if (!(classification instanceof ConditionalClassification)) {
+            return new ScoredClassification(new String[]{classification.bestCategory()}, new double[]{1});
+        }
+        ConditionalClassification conditional = (ConditionalClassification) classification;
+        int size = Math.min(k, conditional.size());
+        String[] topCategories = new String[size];
+        double[] probabilities = new double[size];
+        for (int rank = 0; rank < size; rank++) {
+            topCategories[rank] = conditional.category(rank);
+            probabilities[rank] = conditional.conditionalProbability(rank);
+        }
+        return new ScoredClassification(topCategories, probabilities);
+    }
+
     /**
      * Classifies a set of questions.
      * @param instances map that contains pairs of questions and corresponding categories
@@ -3,11 +3,14 @@ package l2f.interpretation.classification;
 import com.aliasi.classify.BaseClassifier;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import com.aliasi.util.AbstractExternalizable;
 import com.aliasi.util.FeatureExtractor;
 
 import l2f.config.Config;
+import l2f.interpretation.AnalyzedQuestionCache;
 import l2f.interpretation.QuestionAnalyzer;
 import l2f.classifiers.ClassifierFactory;
 import l2f.classifiers.ClassifierFactory.ClassifierType;
@@ -16,6 +19,12 @@ import l2f.utils.ResourceLoadException;
 
 /**
  * Factory used to create QuestionClassifier instances.
+ *
+ * Trained models are saved under a name that includes a fingerprint of
+ * everything they were trained from (training files, question analysis,
+ * features, classifier type and settings, and granularity), so that each
+ * combination evaluated keeps its own model. A model is only trained if
+ * there is none for its fingerprint, or if the force option is set.
  * 
  */
 public class QuestionClassifierFactory {
@@ -32,30 +41,77 @@ public class QuestionClassifierFactory {
             FeatureExtractor<InterpretedQuestion> featureExtractor,
             QuestionClassificationCorpus<InterpretedQuestion> corpus,
             String modelType, boolean useFineGrainedCategories) {
-        File model = new File(Config.classification_modelFile + "." + modelType);
+        ClassifierType classifierType = ClassifierType.valueOf(modelType);
+        String fingerprint = Long.toHexString(fingerprint(questionAnalyzer, featureExtractor, corpus,
+                classifierType, useFineGrainedCategories));
+        File model = new File(Config.classification_modelFile + "." + modelType + "." + fingerprint);
         boolean forceTraining = Config.classification_forceTraining;
+        String[] categories = useFineGrainedCategories
+                ? QuestionCategory.toFineStringArray()
+                : QuestionCategory.toCoarseStringArray();
         try {
-            // train a new model if one doesn't exist already or if the force option is triggered
-            if (!model.exists() || forceTraining) {
-                // train and serialize the question classifier
-                String[] categories = useFineGrainedCategories
-                        ? QuestionCategory.toFineStringArray()
-                        : QuestionCategory.toCoarseStringArray();
-                BaseClassifier<InterpretedQuestion> classifier =
-                        ClassifierFactory.getClassifier(corpus, categories,
-                        ClassifierType.valueOf(modelType), featureExtractor);
-                QuestionClassifier<InterpretedQuestion> questionClassifier = new QuestionClassifier<InterpretedQuestion>(classifier, categories);
-                AbstractExternalizable.serializeTo(questionClassifier, model);
+            BaseClassifier<InterpretedQuestion> classifier = null;
+            // load the model trained from the same data and settings, if any,
+            // unless the force option is triggered
+            if (model.exists() && !forceTraining) {
+                try {
+                    classifier = ClassifierFactory.loadClassifier(model, classifierType, featureExtractor);
+                } catch (IOException ioe) {
+                    System.err.println("Retraining, unable to load model " + model + ": " + ioe.getMessage());
+                }
             }
-            // load serialized model
-            @SuppressWarnings("unchecked")
-            QuestionClassifier<InterpretedQuestion> qc =
-                    (QuestionClassifier<InterpretedQuestion>) AbstractExternalizable.readObject(model);
-            return qc;
+            if (classifier == null) {
+                // saves to a temporary file first, so that an interrupted run
+                // does not leave a truncated model under the fingerprint
+                classifier = ClassifierFactory.getClassifier(corpus, categories, classifierType, featureExtractor);
+                File partial = new File(model.getPath() + ".tmp");
+                ClassifierFactory.saveClassifier(classifier, partial);
+                model.delete();
+                if (!partial.renameTo(model)) {
+                    throw new IOException("Unable to rename " + partial + " to " + model + ".");
+                }
+            }
+            return new QuestionClassifier<InterpretedQuestion>(classifier, categories);
         } catch (IOException ioe) {
             throw new ResourceLoadException("Unable to create QuestionClassifier.", ioe);
-        } catch (ClassNotFoundException cnfe) {
-            throw new ResourceLoadException("Unable to load QuestionClassifier.", cnfe);
+        }
+    }
+
+    /**
+     * Fingerprint of the training files (names and contents), the question
+     * analysis, the feature extractor, the classifier type and settings,
+     * and the granularity of the categories.
+     */
+    static long fingerprint(QuestionAnalyzer questionAnalyzer,
+            FeatureExtractor<InterpretedQuestion> featureExtractor,
+            QuestionClassificationCorpus<InterpretedQuestion> corpus,
+            ClassifierType classifierType, boolean useFineGrainedCategories) {
+        List<String> trainFiles = new ArrayList<String>();
+        if (corpus.getTrainDir() != null) {
+            listFiles(corpus.getTrainDir(), trainFiles);
+        }
+        Collections.sort(trainFiles);
+        return AnalyzedQuestionCache.fingerprint(trainFiles.toArray(new String[trainFiles.size()]),
+                trainFiles.toString(),
+                Long.toHexString(questionAnalyzer.getFingerprint()),
+                featureExtractor.toString(),
+                classifierType.name(),
+                String.valueOf(Config.classification_svmHashDimension),
+                String.valueOf(Config.classification_svmProbability),
+                useFineGrainedCategories ? "FINE" : "COARSE");
+    }
+
+    private static void listFiles(File dir, List<String> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                listFiles(child, files);
+            } else {
+                files.add(child.getPath());
+            }
         }
     }
 }
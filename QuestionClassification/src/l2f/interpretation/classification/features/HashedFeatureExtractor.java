@@ -0,0 +1,16 @@
+package l2f.interpretation.classification.features;
+
+/**
+ * A feature extractor that can also write its features as hashed ids into
+ * a reusable {@link HashedFeatures} vector. The id of a feature must be the
+ * <code>hashCode()</code> of the name the string-keyed extractor gives it.
+ *
+ * @param <E> the type of objects whose features are extracted
+ */
+public interface HashedFeatureExtractor<E> {
+
+    /**
+     * Clears <code>out</code> and adds the features of <code>in</code>.
+     */
+    void features(E in, HashedFeatures out);
+}
@@ -0,0 +1,115 @@
+package l2f.interpretation.classification.features;
+
+import java.util.Arrays;
+
+/**
+ * A reusable feature vector of integer feature ids and counts, as filled
+ * by {@link TestFeatureExtractor#features(l2f.interpretation.InterpretedQuestion, HashedFeatures)}.
+ *
+ * Feature ids are the <code>String.hashCode()</code> of the feature names
+ * the string-keyed extractor would produce, computed without building
+ * them. The vector is not synchronized; use one per thread.
+ */
+public class HashedFeatures {
+
+    private static final int FREE = -1;
+    private int[] ids = new int[32];
+    private int[] counts = new int[32];
+    /**
+     * Open-addressing table from feature ids to their position in
+     * <code>ids</code>.
+     */
+    private int[] slots = newSlots(64);
+    private int size;
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+
+    /**
+     * Removes all features, keeping the allocated buffers.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, FREE);
+            size = 0;
+        }
+    }
+
+    private int slot(int id) {
+        int mask = slots.length - 1;
+        int i = (id * 0x9E3779B9) >>> 16 & mask;
+        while (slots[i] != FREE && ids[slots[i]] != id) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Adds one to the count of feature <code>id</code>.
+     */
+    public void increment(int id) {
+        int slot = slot(id);
+        if (slots[slot] != FREE) {
+            counts[slots[slot]]++;
+        } else {
+            add(slot, id);
+        }
+    }
+
+    /**
+     * Adds feature <code>id</code> with count 1, unless it is already
+     * present (binary features).
+     */
+    public void set(int id) {
+        int slot = slot(id);
+        if (slots[slot] == FREE) {
+            add(slot, id);
+        }
+    }
+
+    private void add(int slot, int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+            counts = Arrays.copyOf(counts, 2 * size);
+        }
+        ids[size] = id;
+        counts[size] = 1;
+        slots[slot] = size++;
+        if (2 * size > slots.length) {
+            slots = newSlots(2 * slots.length);
+            for (int i = 0; i < size; i++) {
+                slots[slot(ids[i])] = i;
+            }
+        }
+    }
+
+    public boolean contains(int id) {
+        return slots[slot(id)] != FREE;
+    }
+
+    public int getCount(int id) {
+        int i = slots[slot(id)];
+        return i == FREE ? 0 : counts[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the <code>i</code>-th feature, in insertion order.
+     */
+    public int id(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Returns the count of the <code>i</code>-th feature, in insertion order.
+     */
+    public int count(int i) {
+        return counts[i];
+    }
+}
@@ -14,8 +14,13 @@ import l2f.interpretation.InterpretedQuestion;
 /**
  * A FeatureExtractor used for testing purposes.
  * 
+ * Questions analyzed without a parse tree (see
+ * <code>AnalyzedQuestion.isShallow()</code>) get the same POS, headword and
+ * category features as parsed ones, since the training questions are
+ * always parsed and features of their own would never be weighted.
  */
-public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestion>, Serializable {
+public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestion>,
+        HashedFeatureExtractor<InterpretedQuestion>, Serializable {
 
     public final EnumSet<FeatureSet> activeFeatures;
 
@@ -23,6 +28,62 @@ public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestio
         this.activeFeatures = activeFeatures;
     }
 
+    /**
+     * Names the active feature sets, so that models trained with different
+     * feature sets can be told apart.
+     */
+    @Override
+    public String toString() {
+        return "TestFeatureExtractor" + activeFeatures;
+    }
+
+    /**
+     * Word shapes, in the order they are tested.
+     */
+    private enum WordShape {
+
+        LOWERCASED, UPPERCASED, CAPITALIZED, MIXEDCASED, DIGITSONLY, OTHERCASED;
+        final String feature = "#F#" + name() + "#";
+        final String binaryFeature = "#B#" + name() + "#";
+        final int featureHash = feature.hashCode();
+        final int binaryFeatureHash = binaryFeature.hashCode();
+
+        /**
+         * Same as matching, in order, ^[a-z]+$, ^[A-Z]+$, ^[A-Z][a-zA-Z]+$,
+         * ^[a-zA-Z]+$ and ^[0-9]+$.
+         */
+        static WordShape of(String token) {
+            int n = token.length();
+            if (n == 0) {
+                return OTHERCASED;
+            }
+            boolean lower = true;
+            boolean upper = true;
+            boolean letters = true;
+            boolean digits = true;
+            for (int i = 0; i < n; i++) {
+                char c = token.charAt(i);
+                boolean isLower = c >= 'a' && c <= 'z';
+                boolean isUpper = c >= 'A' && c <= 'Z';
+                lower &= isLower;
+                upper &= isUpper;
+                letters &= isLower || isUpper;
+                digits &= c >= '0' && c <= '9';
+            }
+            if (lower) {
+                return LOWERCASED;
+            }
+            if (upper) {
+                return UPPERCASED;
+            }
+            if (letters) {
+                char first = token.charAt(0);
+                return n > 1 && first >= 'A' && first <= 'Z' ? CAPITALIZED : MIXEDCASED;
+            }
+            return digits ? DIGITSONLY : OTHERCASED;
+        }
+    }
+
     @Override
     public Map<String, Counter> features(InterpretedQuestion it) {
         AnalyzedQuestion in = it.getAnalyzedQuestion();
@@ -30,8 +91,9 @@ public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestio
         List<String> tokens = in.getTokens();
         if (activeFeatures.contains(FeatureSet.BINARY_UNIGRAM)) {
             for (int i = 0; i < tokens.size(); i++) {
-                if (!map.containsKey("#B#" + tokens.get(i))) {
-                    map.increment("#B#" + tokens.get(i));
+                String feature = "#B#" + tokens.get(i);
+                if (!map.containsKey(feature)) {
+                    map.increment(feature);
                 }
             }
         }
@@ -42,8 +104,9 @@ public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestio
         }
         if (activeFeatures.contains(FeatureSet.BINARY_BIGRAM)) {
             for (int i = 1; i < tokens.size(); i++) {
-                if (!map.containsKey("#B#" + tokens.get(i - 1) + " " + tokens.get(i))) {
-                    map.increment("#B#" + tokens.get(i - 1) + " " + tokens.get(i));
+                String feature = "#B#" + tokens.get(i - 1) + " " + tokens.get(i);
+                if (!map.containsKey(feature)) {
+                    map.increment(feature);
                 }
             }
         }
@@ -59,73 +122,24 @@ public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestio
         }
         if (activeFeatures.contains(FeatureSet.BINARY_TRIGRAM)) {
             for (int i = 2; i < tokens.size(); i++) {
-                if (!map.containsKey("#B#" + tokens.get(i - 2) +  " " + tokens.get(i - 1) + " " + tokens.get(i))) {
-                    map.increment("#B#" + tokens.get(i - 2) + " " +  tokens.get(i - 1) + " " + tokens.get(i));
+                String feature = "#B#" + tokens.get(i - 2) + " " +  tokens.get(i - 1) + " " + tokens.get(i);
+                if (!map.containsKey(feature)) {
+                    map.increment(feature);
                 }
             }
         }
 
         if (activeFeatures.contains(FeatureSet.WORD_SHAPE)) {
             for (int i = 0; i < tokens.size(); i++) {
-                if (tokens.get(i).matches("^[a-z]+$")) {
-                    map.increment("#F#LOWERCASED#");
-                    continue;
-                }
-                if (tokens.get(i).matches("^[A-Z]+$")) {
-                    map.increment("#F#UPPERCASED#");
-                    continue;
-                }
-                if (tokens.get(i).matches("^[A-Z][a-zA-Z]+$")) {
-                    map.increment("#F#CAPITALIZED#");
-                    continue;
-                }
-                if (tokens.get(i).matches("^[a-zA-Z]+$")) {
-                    map.increment("#F#MIXEDCASED#");
-                    continue;
-                }
-                if (tokens.get(i).matches("^[0-9]+$")) {
-                    map.increment("#F#DIGITSONLY#");
-                    continue;
-                }
-                map.increment("#F#OTHERCASED#");
+                map.increment(WordShape.of(tokens.get(i)).feature);
             }
         }
 
         if (activeFeatures.contains(FeatureSet.BINARY_WORD_SHAPE)) {
             for (int i = 0; i < tokens.size(); i++) {
-                if (tokens.get(i).matches("^[a-z]+$")) {
-                    if (!map.containsKey("#B#LOWERCASED#")) {
-                        map.increment("#B#LOWERCASED#");
-                    }
-                    continue;
-                }
-                if (tokens.get(i).matches("^[A-Z]+$")) {
-                    if (!map.containsKey("#B#UPPERCASED#")) {
-                        map.increment("#B#UPPERCASED#");
-                    }
-                    continue;
-                }
-                if (tokens.get(i).matches("^[A-Z][a-zA-Z]+$")) {
-                    if (!map.containsKey("#B#CAPITALIZED#")) {
-                        map.increment("#B#CAPITALIZED#");
-                    }
-                    continue;
-                }
-                if (tokens.get(i).matches("^[a-zA-Z]+$")) {
-                    if (!map.containsKey("#B#MIXEDCASED#")) {
-                        map.increment("#B#MIXEDCASED#");
-                    }
-                    continue;
-                }
-
-                if (tokens.get(i).matches("^[0-9]+$")) {
-                    if (!map.containsKey("#B#DIGITSONLY#")) {
-                        map.increment("#B#DIGITSONLY#");
-                    }
-                    continue;
-                }
-                if (!map.containsKey("#B#OTHERCASED#")) {
-                    map.increment("#B#OTHERCASED#");
+                String feature = WordShape.of(tokens.get(i)).binaryFeature;
+                if (!map.containsKey(feature)) {
+                    map.increment(feature);
                 }
             }
         }
@@ -164,4 +178,109 @@ public class TestFeatureExtractor implements FeatureExtractor<InterpretedQuestio
 //}
         return map;
     }
+
+    private static final int BINARY_HASH = "#B#".hashCode();
+    private static final int SHORT_LENGTH_HASH = "#LENGHT#S#".hashCode();
+    private static final int LONG_LENGTH_HASH = "#LENGHT#L#".hashCode();
+    private static final int HEADWORD_HASH = "#HW#".hashCode();
+    private static final int CATEGORY_HASH = "#WN#".hashCode();
+
+    /**
+     * Returns 31^n, the factor <code>String.hashCode()</code> applies to
+     * the hash of a prefix followed by n more characters.
+     */
+    private static int pow31(int n) {
+        int power = 1;
+        int base = 31;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                power *= base;
+            }
+            base *= base;
+            n >>= 1;
+        }
+        return power;
+    }
+
+    /**
+     * Returns the hash code of the concatenation of a string whose hash
+     * code is <code>hash</code> and <code>s</code>.
+     */
+    private static int append(int hash, String s) {
+        return hash * pow31(s.length()) + s.hashCode();
+    }
+
+    private static int append(int hash, char c) {
+        return 31 * hash + c;
+    }
+
+    /**
+     * Same as {@link #features(InterpretedQuestion)}, but adds to
+     * <code>out</code> (after clearing it) the hash codes of the feature
+     * names, composed from the hash codes of the tokens, which
+     * <code>String</code> caches, instead of building the names.
+     */
+    @Override
+    public void features(InterpretedQuestion it, HashedFeatures out) {
+        AnalyzedQuestion in = it.getAnalyzedQuestion();
+        List<String> tokens = in.getTokens();
+        out.clear();
+        if (activeFeatures.contains(FeatureSet.BINARY_UNIGRAM)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                out.set(append(BINARY_HASH, tokens.get(i)));
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.UNIGRAM)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                out.increment(tokens.get(i).hashCode());
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.BINARY_BIGRAM)) {
+            for (int i = 1; i < tokens.size(); i++) {
+                out.set(append(append(append(BINARY_HASH, tokens.get(i - 1)), ' '), tokens.get(i)));
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.BIGRAM)) {
+            for (int i = 1; i < tokens.size(); i++) {
+                out.increment(append(append(tokens.get(i - 1).hashCode(), ' '), tokens.get(i)));
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.TRIGRAM)) {
+            for (int i = 2; i < tokens.size(); i++) {
+                out.increment(append(append(append(append(tokens.get(i - 2).hashCode(), ' '),
+                        tokens.get(i - 1)), ' '), tokens.get(i)));
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.BINARY_TRIGRAM)) {
+            for (int i = 2; i < tokens.size(); i++) {
+                out.set(append(append(append(append(append(BINARY_HASH, tokens.get(i - 2)), ' '),
+                        tokens.get(i - 1)), ' '), tokens.get(i)));
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.WORD_SHAPE)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                out.increment(WordShape.of(tokens.get(i)).featureHash);
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.BINARY_WORD_SHAPE)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                out.set(WordShape.of(tokens.get(i)).binaryFeatureHash);
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.LENGTH)) {
+            out.increment(tokens.size() < 6 ? SHORT_LENGTH_HASH : LONG_LENGTH_HASH);
+        }
+        if (activeFeatures.contains(FeatureSet.POS)) {
+            List<String> posTags = in.getPosTags();
+            for (int i = 0; i < posTags.size(); i++) {
+                out.increment(posTags.get(i).hashCode());
+            }
+        }
+        if (activeFeatures.contains(FeatureSet.HEADWORD)) {
+            out.increment(append(HEADWORD_HASH, String.valueOf(in.getHeadword())));
+        }
+        if (activeFeatures.contains(FeatureSet.CATEGORY)) {
+            out.increment(append(CATEGORY_HASH, String.valueOf(in.getHeadwordLexiconTarget())));
+        }
+    }
 }
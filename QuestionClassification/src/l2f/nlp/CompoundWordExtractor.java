@@ -1,7 +1,5 @@
 package l2f.nlp;
 
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -27,14 +25,23 @@ public class CompoundWordExtractor {
 	private static Pattern POSTMODIFIER_TAGS = Pattern.compile("DT|NNP?S?|JJS?");
 	
 	/**
-	 * Lexicon used to look up compound words.
+	 * Lexicon used to look up compound words, if there is no index.
 	 */
 	private Lexicon lexicon;
 	
+	/**
+	 * Index of the WordNet nouns used to look up compound words.
+	 */
+	private CompoundWordIndex index;
+	
 	public CompoundWordExtractor(Lexicon lexicon) {
 		this.lexicon = lexicon;
 	}
 	
+	public CompoundWordExtractor(CompoundWordIndex index) {
+		this.index = index;
+	}
+	
 	/**
 	 * Tries to identify a compound word in the <code>words</code>
 	 * collection, using <code>head</code> as the head word.
@@ -52,69 +59,79 @@ public class CompoundWordExtractor {
 	public String tryGetCompoundWord(List<String> words, List<String> tags,
 			String head) {
 		int headIdx = words.indexOf(head);
-		Deque<String> premodifiers = getPremodifiers(words, tags, headIdx);
-		if (!premodifiers.isEmpty()) {
-			premodifiers.addLast(head);
-			String compound = Utils.join(premodifiers, ' ');
+		if (headIdx < 0) {
+			return head;
+		}
+		int first = getFirstPremodifier(words, tags, headIdx);
+		if (first < headIdx) {
 			// premodifier + head;
-			//System.err.println("premodifiers + head = " + compound);
-			if (lexicon.hasWord(compound)) {
-				return compound;
-			} else if (premodifiers.size() > 2) {
+			List<String> compound = words.subList(first, headIdx + 1);
+			if (hasWord(compound)) {
+				return Utils.join(compound, ' ');
+			} else if (compound.size() > 2) {
 				// Try again without the first premodifier. This can be useful if
 				// the first modifier is one of the following:
 				// 	attribute adjective (e.g., _red_ Chinese flag) or
 				// 	indefinite adjectives (e.g., many; a few) or
 				// 	numeral adjective (e.g., _only_ world cup, _first_ world cup)
-				premodifiers.removeFirst();
-				compound = Utils.join(premodifiers, ' ');
-				//System.err.println("premodifiers skip + head = " + compound);
-				if (lexicon.hasWord(compound)) {
-					return compound;
+				compound = words.subList(first + 1, headIdx + 1);
+				if (hasWord(compound)) {
+					return Utils.join(compound, ' ');
 				}
 			}
 		}
-		Deque<String> postmodifiers = getPostmodifiers(words, tags, headIdx);
-		if (postmodifiers.size() > 1) {
-			//String compound = head + postmodifiers;
-			postmodifiers.addFirst(head);
-			String compound = Utils.join(postmodifiers, ' ');
-			//System.err.println(compound);
-			if (lexicon.hasWord(compound)) {
-				return compound;
+		int last = getLastPostmodifier(words, tags, headIdx);
+		if (last - headIdx > 1) {
+			// head + postmodifiers
+			List<String> compound = words.subList(headIdx, last + 1);
+			if (hasWord(compound)) {
+				return Utils.join(compound, ' ');
 			}
 		}
 		return head;
 	}
 	
-	private Deque<String> getPremodifiers(List<String> words, List<String> tags, 
+	private boolean hasWord(List<String> words) {
+		if (index != null) {
+			return index.hasWord(words);
+		}
+		return lexicon.hasWord(Utils.join(words, ' '));
+	}
+	
+	/**
+	 * Returns the position of the first premodifier of the head word, or
+	 * <code>headIdx</code> if it has none.
+	 */
+	private int getFirstPremodifier(List<String> words, List<String> tags, 
 			int headIdx) {
-		Deque<String> premodifiers = new LinkedList<String>();
-		int previous = headIdx - 1;
-		for (int i = previous; i >= 0 && PREMODIFIER_TAGS.matcher(tags.get(i)).matches() &&
-			!PREMODIFIER_WORDS_IGNORE.matcher(words.get(i)).matches(); i--) {
-			premodifiers.addFirst(words.get(i));
+		int first = headIdx;
+		while (first > 0 && PREMODIFIER_TAGS.matcher(tags.get(first - 1)).matches() &&
+			!PREMODIFIER_WORDS_IGNORE.matcher(words.get(first - 1)).matches()) {
+			first--;
 		}
-		return premodifiers;
+		return first;
 	}
 	
 	/**
+	 * Returns the position of the last postmodifier of the head word, or
+	 * <code>headIdx</code> if it has none.
+	 * 
 	 * Examples: master_of_science_in_engineering;
 	 * arcuate_artery_of_the_kidney mixed;
 	 * capital of the bahamas. 
 	 */	
-	private Deque<String> getPostmodifiers(List<String> words, List<String> tags,
+	private int getLastPostmodifier(List<String> words, List<String> tags,
 			int headIdx) {		
 		int size = words.size();
 		int next = headIdx + 1;
-		Deque<String> postmodifiers = new LinkedList<String>();
+		int last = headIdx;
 		if (next < size && tags.get(next).equals("IN")) {
-			postmodifiers.add(words.get(next));
-			for (int i = next + 1; i < size && POSTMODIFIER_TAGS.matcher(tags.get(i)).matches(); i++) {
-				postmodifiers.add(words.get(i));	
+			last = next;
+			while (last + 1 < size && POSTMODIFIER_TAGS.matcher(tags.get(last + 1)).matches()) {
+				last++;
 			}
 		}
-		return postmodifiers;
+		return last;
 	}
 
 	@SuppressWarnings("unused")
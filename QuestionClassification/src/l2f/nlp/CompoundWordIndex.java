@@ -0,0 +1,422 @@
+package l2f.nlp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import l2f.utils.BloomFilter;
+import l2f.utils.LongIntMap;
+import l2f.utils.ResourceLoadException;
+import l2f.utils.Utils;
+
+/**
+ * In-memory index of the WordNet noun lemmas, used to tell whether a run of
+ * words is a noun (in particular, a compound noun such as "capital of
+ * Portugal") without looking it up in the WordNet dictionary.
+ *
+ * Lemmas are stored in a trie over their words (the parts of the lemma
+ * between underscores), with a Bloom filter in front of the single-word
+ * lemmas. Words that are not lemmas are reduced to their base forms the way
+ * JWNL's <code>DefaultMorphologicalProcessor</code> does with the
+ * operations in <code>file_properties.xml</code> (exception list, suffix
+ * detachment and collocation tokenizing), so {@link #hasWord} gives the
+ * same answers as {@link WordNet#hasWord}. The noun suffixes and the
+ * delimiters are not read from that file but copied from it, and must be
+ * kept in sync with it. The index is immutable and can be shared by several
+ * threads.
+ */
+public class CompoundWordIndex {
+
+    /**
+     * Noun suffixes of <code>DetachSuffixesOperation</code>, in order, as in
+     * <code>file_properties.xml</code>.
+     */
+    private static final String[][] SUFFIXES = {
+        {"s", ""}, {"ses", "s"}, {"xes", "x"}, {"zes", "z"}, {"ches", "ch"}, {"shes", "sh"}, {"men", "man"}, {"ies", "y"}
+    };
+    /**
+     * Delimiters of <code>TokenizerOperation</code>, in order, as in
+     * <code>file_properties.xml</code>.
+     */
+    private static final String DELIMITERS = " -";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final Map<String, CompoundWordIndex> INSTANCES = new HashMap<String, CompoundWordIndex>();
+    /**
+     * Identifier of each word of a lemma.
+     */
+    private final Map<String, Integer> words;
+    /**
+     * Child of each trie node (0 is the root) by word, keyed by
+     * <code>node &lt;&lt; 32 | word</code>.
+     */
+    private final LongIntMap children;
+    /**
+     * Trie nodes at which a lemma ends.
+     */
+    private final BitSet lemmas;
+    private final BloomFilter singleWords;
+    /**
+     * Base forms of the words in the noun exception list, with spaces
+     * between words.
+     */
+    private final Map<String, List<String>> exceptions;
+    private final int size;
+
+    private CompoundWordIndex(List<String> lemmaList, Map<String, List<String>> exceptions) {
+        this.words = new HashMap<String, Integer>();
+        this.children = new LongIntMap(2 * lemmaList.size(), -1);
+        this.lemmas = new BitSet();
+        this.singleWords = new BloomFilter(Math.max(lemmaList.size(), 1), FALSE_POSITIVE_RATE);
+        this.exceptions = exceptions;
+        int nodes = 1;
+        for (String lemma : lemmaList) {
+            int node = 0;
+            StringTokenizer tokens = new StringTokenizer(lemma, "_");
+            while (tokens.hasMoreTokens()) {
+                String word = tokens.nextToken();
+                Integer id = words.get(word);
+                if (id == null) {
+                    id = words.size();
+                    words.put(word, id);
+                }
+                long key = edge(node, id);
+                int child = children.get(key);
+                if (child < 0) {
+                    child = nodes++;
+                    children.put(key, child);
+                }
+                node = child;
+            }
+            lemmas.set(node);
+            if (lemma.indexOf('_') < 0) {
+                singleWords.add(lemma);
+            }
+        }
+        this.size = lemmaList.size();
+    }
+
+    /**
+     * Returns the index of the WordNet files in <code>dictionaryPath</code>,
+     * building it the first time it is requested.
+     */
+    public static CompoundWordIndex getInstance(String dictionaryPath) {
+        synchronized (INSTANCES) {
+            CompoundWordIndex index = INSTANCES.get(dictionaryPath);
+            if (index == null) {
+                try {
+                    index = build(dictionaryPath);
+                } catch (IOException ioe) {
+                    throw new ResourceLoadException("Couldn't build CompoundWordIndex.", ioe);
+                }
+                INSTANCES.put(dictionaryPath, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Builds the index from the noun index and exception files in
+     * <code>dictionaryPath</code>.
+     */
+    public static CompoundWordIndex build(String dictionaryPath) throws IOException {
+        List<String> lemmaList = new ArrayList<String>();
+        Map<String, List<String>> exceptions = new HashMap<String, List<String>>();
+        for (String[] entry : readEntries(new File(dictionaryPath, "index.noun"))) {
+            lemmaList.add(entry[0]);
+        }
+        for (String[] entry : readEntries(new File(dictionaryPath, "noun.exc"))) {
+            List<String> bases = exceptions.get(entry[0]);
+            if (bases == null) {
+                bases = new ArrayList<String>();
+                exceptions.put(entry[0], bases);
+            }
+            for (int i = 1; i < entry.length; i++) {
+                bases.add(entry[i].replace('_', ' '));
+            }
+        }
+        return new CompoundWordIndex(lemmaList, exceptions);
+    }
+
+    /**
+     * Reads the words of each line of a WordNet index or exception file.
+     */
+    private static List<String[]> readEntries(File file) throws IOException {
+        List<String[]> entries = new ArrayList<String[]>();
+        if (!file.exists()) {
+            throw new FileNotFoundException("Missing WordNet file " + file + ".");
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(" ") || line.length() == 0) {
+                    continue; // license
+                }
+                entries.add(line.split(" "));
+            }
+        } finally {
+            reader.close();
+        }
+        return entries;
+    }
+
+    private static long edge(int node, int word) {
+        return ((long) node << 32) | word;
+    }
+
+    /**
+     * Returns the number of lemmas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns false if <code>word</code> is certainly not a single-word noun
+     * lemma, and true if it probably is, without looking up the trie.
+     */
+    public boolean mightBeWord(String word) {
+        return singleWords.mightContain(word.trim().toLowerCase());
+    }
+
+    /**
+     * Returns whether <code>word</code> is a noun, see
+     * {@link Lexicon#hasWord}.
+     */
+    public boolean hasWord(String word) {
+        String lemma = lookup(word);
+        /* See WordNet.hasWord: the base form of a collocation can lose
+         * words, such as "real birthday" into "real".
+         */
+        return lemma != null && countWords(lemma) == Utils.countWhitespaces(word) + 1;
+    }
+
+    /**
+     * Returns whether <code>words</code>, separated by spaces, are a noun.
+     */
+    public boolean hasWord(List<String> words) {
+        return hasWord(Utils.join(words, ' '));
+    }
+
+    /**
+     * Same as JWNL's <code>Dictionary.getIndexWord</code>: returns the lemma
+     * of the index word for <code>lemma</code> (trimmed, in lower case and
+     * with words separated by spaces or underscores), or null if there is
+     * none.
+     */
+    private String getIndexWord(String lemma) {
+        lemma = lemma.trim().toLowerCase();
+        if (lemma.length() == 0) {
+            return null;
+        }
+        int node = 0;
+        int start = 0;
+        while (true) {
+            int end = start;
+            while (end < lemma.length() && lemma.charAt(end) != ' ' && lemma.charAt(end) != '_') {
+                end++;
+            }
+            String word = lemma.substring(start, end);
+            if (start == 0 && end == lemma.length() && !singleWords.mightContain(word)) {
+                return null;
+            }
+            Integer id = words.get(word);
+            if (id == null) {
+                return null;
+            }
+            node = children.get(edge(node, id));
+            if (node < 0) {
+                return null;
+            }
+            if (end == lemma.length()) {
+                return lemmas.get(node) ? lemma : null;
+            }
+            start = end + 1;
+        }
+    }
+
+    private static int countWords(String lemma) {
+        int count = 1;
+        for (int i = 0; i < lemma.length(); i++) {
+            if (lemma.charAt(i) == ' ' || lemma.charAt(i) == '_') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Same as JWNL's <code>Dictionary.lookupIndexWord</code>: returns the
+     * lemma of <code>word</code>, or else of its first base form.
+     *
+     * @return the lemma, or null if there is none
+     */
+    private String lookup(String word) {
+        String lemma = word.trim().toLowerCase();
+        String indexWord = getIndexWord(lemma);
+        if (indexWord != null || lemma.length() == 0) {
+            return indexWord;
+        }
+        // the morphological operations of file_properties.xml, in order,
+        // until one of them finds base forms
+        List<String> forms = new ArrayList<String>();
+        if (lookupExceptions(lemma, forms) || detachSuffixes(lemma, forms) || lookupCollocation(lemma, forms)) {
+            return getIndexWord(forms.get(0));
+        }
+        return null;
+    }
+
+    /**
+     * Adds <code>form</code> to <code>forms</code>, unless it is already
+     * there.
+     */
+    private static void addForm(List<String> forms, String form) {
+        if (!forms.contains(form)) {
+            forms.add(form);
+        }
+    }
+
+    /**
+     * JWNL's <code>LookupIndexWordOperation</code>.
+     */
+    private boolean lookupIndexWord(String lemma, List<String> forms) {
+        if (getIndexWord(lemma) == null) {
+            return false;
+        }
+        addForm(forms, lemma);
+        return true;
+    }
+
+    /**
+     * JWNL's <code>LookupExceptionsOperation</code>: adds the base forms of
+     * <code>lemma</code> in the exception list, whether or not they are
+     * lemmas.
+     */
+    private boolean lookupExceptions(String lemma, List<String> forms) {
+        List<String> bases = exceptions.get(lemma.trim().toLowerCase().replace(' ', '_'));
+        if (bases == null) {
+            return false;
+        }
+        for (String base : bases) {
+            addForm(forms, base);
+        }
+        return true;
+    }
+
+    /**
+     * JWNL's <code>DetachSuffixesOperation</code>, looking up each base as
+     * an index word and in the exception list.
+     */
+    private boolean detachSuffixes(String lemma, List<String> forms) {
+        boolean found = false;
+        for (String[] suffix : SUFFIXES) {
+            if (lemma.endsWith(suffix[0])) {
+                String base = lemma.substring(0, lemma.length() - suffix[0].length()) + suffix[1];
+                found |= lookupIndexWord(base, forms);
+                found |= lookupExceptions(base, forms);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * JWNL's <code>TokenizerOperation</code>: splits <code>lemma</code> into
+     * runs of letters and apostrophes and, for the runs from each start to
+     * each end (longest first), tries every combination of their base forms,
+     * joined by each delimiter or by nothing. Only the first lemma found is
+     * added, since <code>lookup</code> only uses that one.
+     */
+    private boolean lookupCollocation(String lemma, List<String> forms) {
+        List<String> tokens = split(lemma);
+        List<List<String>> tokenForms = new ArrayList<List<String>>(tokens.size());
+        for (String token : tokens) {
+            List<String> baseForms = new ArrayList<String>();
+            baseForms.add(token);
+            lookupIndexWord(token, baseForms);
+            lookupExceptions(token, baseForms);
+            detachSuffixes(token, baseForms);
+            tokenForms.add(baseForms);
+        }
+        for (int start = 0; start < tokenForms.size(); start++) {
+            for (int end = tokenForms.size() - 1; end >= start; end--) {
+                String found = combine(tokenForms, start, end);
+                if (found != null) {
+                    addForm(forms, found);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * JWNL's <code>morph.Util.split</code>.
+     */
+    private static List<String> split(String lemma) {
+        List<String> tokens = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= lemma.length(); i++) {
+            boolean inToken = i < lemma.length()
+                    && ((lemma.charAt(i) >= 'a' && lemma.charAt(i) <= 'z') || lemma.charAt(i) == '\'');
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(lemma.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the first combination of the forms of the tokens from
+     * <code>start</code> to <code>end</code> that is a lemma, varying the
+     * form of the last token fastest, then the delimiter, and then which
+     * tokens are joined without a delimiter.
+     */
+    private String combine(List<List<String>> tokenForms, int start, int end) {
+        int n = end - start + 1;
+        int[] indexes = new int[n];
+        String[] tokens = new String[n];
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                tokens[i] = tokenForms.get(start + i).get(indexes[i]);
+            }
+            for (int d = 0; d < DELIMITERS.length(); d++) {
+                // bit i of joined: no delimiter between tokens i and i + 1,
+                // counting in binary with the last gap as the lowest bit
+                for (long joined = 0; joined < (1L << (n - 1)); joined++) {
+                    sb.setLength(0);
+                    for (int i = 0; i < n; i++) {
+                        if (i > 0 && (joined & (1L << (n - 1 - i))) == 0) {
+                            sb.append(DELIMITERS.charAt(d));
+                        }
+                        sb.append(tokens[i]);
+                    }
+                    String lemma = sb.toString();
+                    if (getIndexWord(lemma) != null) {
+                        return lemma;
+                    }
+                }
+            }
+            int i = n - 1;
+            while (i >= 0 && indexes[i] == tokenForms.get(start + i).size() - 1) {
+                indexes[i--] = 0;
+            }
+            if (i < 0) {
+                return null;
+            }
+            indexes[i]++;
+        }
+    }
+}
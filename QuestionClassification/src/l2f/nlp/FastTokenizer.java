@@ -0,0 +1,185 @@
+package l2f.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.berkeley.nlp.io.Americanize;
+
+/**
+ * Tokenizer for plain ASCII questions that returns the tokens of the
+ * <code>PTBTokenizer</code> without running its scanner.
+ *
+ * The question is split at spaces, and each chunk must be one of the
+ * common cases below, optionally followed by <code>? ! , ; :</code>
+ * (each a token):
+ * <ul>
+ * <li>a word of letters (in American spelling, as the scanner does);</li>
+ * <li>a word followed by <code>'s</code> (split off, with the word kept
+ * as written);</li>
+ * <li>letters joined by hyphens, or digits joined by <code>.</code> or
+ * <code>,</code>;</li>
+ * <li>on its own, a clitic such as <code>'s</code> or <code>n't</code>,
+ * <code>``</code>, <code>''</code>, <code>--</code>, <code>...</code> or
+ * <code>.</code>.</li>
+ * </ul>
+ * Any other question (quotes, brackets, periods after words, clitics other
+ * than <code>'s</code> attached to words, other characters, ...) is
+ * tokenized by the <code>PTBTokenizer</code>.
+ */
+public class FastTokenizer implements Tokenizer {
+
+    /**
+     * Maximum number of words whose American spelling is remembered.
+     */
+    private static final int SPELLING_CACHE_SIZE = 20000;
+    private static final Set<String> STANDALONE = new HashSet<String>(Arrays.asList(
+            "'s", "'S", "'re", "'ve", "'ll", "'d", "'m", "n't", "N'T", "``", "''", "--", "...", "."));
+    private static final String TRAILING = "?!,;:";
+    private static final String[] TRAILING_TOKENS = {"?", "!", ",", ";", ":"};
+    private final PTBTokenizer scanner = new PTBTokenizer();
+    private final Map<String, String> spellings = new HashMap<String, String>();
+
+    @Override
+    public List<String> tokenize(String line) {
+        if (line == null) {
+            return new ArrayList<String>();
+        }
+        List<String> tokens = tokenizeCommon(line);
+        return tokens != null ? tokens : scanner.tokenize(line);
+    }
+
+    /**
+     * Tokenizes <code>line</code> if it only has the common cases.
+     *
+     * @return the tokens, or null if the line needs the scanner
+     */
+    private List<String> tokenizeCommon(String line) {
+        List<String> tokens = new ArrayList<String>();
+        int length = line.length();
+        int start = 0;
+        while (start < length) {
+            if (line.charAt(start) == ' ') {
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < length && line.charAt(end) != ' ') {
+                end++;
+            }
+            if (!addChunk(line, start, end, tokens)) {
+                return null;
+            }
+            start = end;
+        }
+        return tokens;
+    }
+
+    private boolean addChunk(String line, int start, int end, List<String> tokens) {
+        int coreEnd = end;
+        while (coreEnd > start && TRAILING.indexOf(line.charAt(coreEnd - 1)) >= 0) {
+            coreEnd--;
+        }
+        if (coreEnd > start && !addCore(line.substring(start, coreEnd), coreEnd == end, tokens)) {
+            return false;
+        }
+        for (int i = coreEnd; i < end; i++) {
+            tokens.add(TRAILING_TOKENS[TRAILING.indexOf(line.charAt(i))]);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the tokens of a chunk without its trailing punctuation.
+     *
+     * @param standalone whether the chunk had no trailing punctuation
+     * @return false if the chunk is not a common case
+     */
+    private boolean addCore(String core, boolean standalone, List<String> tokens) {
+        if (standalone && STANDALONE.contains(core)) {
+            tokens.add(core);
+            return true;
+        }
+        int length = core.length();
+        int letters = countLetters(core, 0);
+        if (letters == length) {
+            if (core.equalsIgnoreCase("cannot")) {
+                return false; // split into "can" "not"
+            }
+            tokens.add(americanize(core));
+            return true;
+        }
+        if (letters > 0 && letters == length - 2 && core.charAt(letters) == '\''
+                && (core.charAt(letters + 1) == 's' || core.charAt(letters + 1) == 'S')) {
+            tokens.add(core.substring(0, letters));
+            tokens.add(core.substring(letters));
+            return true;
+        }
+        if (letters > 0 && isJoined(core, letters, '-', '-', true)) {
+            tokens.add(core);
+            return true;
+        }
+        int digits = countDigits(core, 0);
+        if (digits > 0 && isJoined(core, digits, '.', ',', false)) {
+            tokens.add(core);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether <code>core</code>, from <code>start</code> on, is a
+     * sequence of separators followed by runs of letters (or digits).
+     */
+    private static boolean isJoined(String core, int start, char separator, char otherSeparator, boolean letters) {
+        int i = start;
+        while (i < core.length()) {
+            char c = core.charAt(i);
+            if (c != separator && c != otherSeparator) {
+                return false;
+            }
+            int run = letters ? countLetters(core, i + 1) : countDigits(core, i + 1);
+            if (run == 0) {
+                return false;
+            }
+            i += 1 + run;
+        }
+        return true;
+    }
+
+    private static int countLetters(String s, int start) {
+        int i = start;
+        while (i < s.length() && ((s.charAt(i) >= 'a' && s.charAt(i) <= 'z') || (s.charAt(i) >= 'A' && s.charAt(i) <= 'Z'))) {
+            i++;
+        }
+        return i - start;
+    }
+
+    private static int countDigits(String s, int start) {
+        int i = start;
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Returns <code>word</code> in American spelling, remembering the
+     * words seen.
+     */
+    private String americanize(String word) {
+        String spelling = spellings.get(word);
+        if (spelling == null) {
+            if (spellings.size() >= SPELLING_CACHE_SIZE) {
+                spellings.clear();
+            }
+            spelling = Americanize.americanize(word);
+            spellings.put(word, spelling);
+        }
+        return spelling;
+    }
+}
@@ -0,0 +1,310 @@
+package l2f.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathFactory;
+
+import net.didion.jwnl.data.POS;
+
+import org.w3c.dom.Document;
+
+import l2f.config.Config;
+import l2f.interpretation.LexiconMap;
+import l2f.utils.LongIntMap;
+import l2f.utils.ResourceLoadException;
+import l2f.utils.Utils;
+
+/**
+ * HypernymIndex precomputes, for every WordNet synset, the nearest synset in
+ * its hypernym closure (itself included) that belongs to a
+ * <code>LexiconMap</code>, so that mapping a word into a category does not
+ * require walking the hypernym graph.
+ *
+ * The index is built straight from the WordNet data files, visiting the
+ * hypernyms in the same breadth-first order as
+ * {@link WordNet#intersectMap1stSense}, and is stored as a primitive
+ * long-to-int table from (POS, synset offset) to the matched synset and
+ * number of hops. Since it depends on both the lexicon map and WordNet, it
+ * is saved with a fingerprint of the two and rebuilt when either changes.
+ */
+public class HypernymIndex {
+
+    private static final int MAGIC = 0x48595031; // "HYP1"
+    private static final int VERSION = 1;
+    private static final POS[] POS_LIST = {POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB};
+    private static final String[] POS_FILES = {"noun", "verb", "adj", "adv"};
+    /**
+     * Hypernym walks longer than this are assumed to be cyclic (WordNet 3.0
+     * has a cycle between two verb synsets, "inhibit" and "restrain").
+     */
+    private static final int MAX_STEPS = 100000;
+
+    /**
+     * A synset of the lexicon map reached from another synset.
+     */
+    public static class Hit {
+
+        /**
+         * Offset of the synset in the lexicon map.
+         */
+        public final long offset;
+        /**
+         * Category it is mapped to.
+         */
+        public final String target;
+        /**
+         * Words of the synset, separated by commas.
+         */
+        public final String words;
+        /**
+         * Number of hypernym links followed to reach it (0 if it is the
+         * synset that was looked up).
+         */
+        public final int hops;
+
+        Hit(long offset, String target, String words, int hops) {
+            this.offset = offset;
+            this.target = target;
+            this.words = words;
+            this.hops = hops;
+        }
+    }
+    /**
+     * (POS, offset) keys, see <code>key()</code>, mapped to the index of the
+     * matched synset in the tables below shifted left 8 bits, plus the
+     * number of hops.
+     */
+    private final LongIntMap synsets;
+    private final long[] hitOffsets;
+    private final String[] hitTargets;
+    private final String[] hitWords;
+
+    private HypernymIndex(LongIntMap synsets, long[] hitOffsets, String[] hitTargets, String[] hitWords) {
+        this.synsets = synsets;
+        this.hitOffsets = hitOffsets;
+        this.hitTargets = hitTargets;
+        this.hitWords = hitWords;
+    }
+
+    private static long key(int pos, long offset) {
+        return ((long) pos << 32) | offset;
+    }
+
+    private static int posIndex(POS pos) {
+        for (int i = 0; i < POS_LIST.length; i++) {
+            if (POS_LIST[i].equals(pos)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown POS: " + pos);
+    }
+
+    /**
+     * Returns the nearest synset of the lexicon map in the hypernym closure
+     * of the synset at <code>offset</code>, or null if there is none.
+     */
+    public Hit lookup(POS pos, long offset) {
+        int value = synsets.get(key(posIndex(pos), offset));
+        if (value < 0) {
+            return null;
+        }
+        int hit = value >>> 8;
+        return new Hit(hitOffsets[hit], hitTargets[hit], hitWords[hit], value & 0xFF);
+    }
+
+    public int size() {
+        return synsets.size();
+    }
+
+    /**
+     * Loads the index from <code>filename</code>, or builds it (and saves it
+     * to <code>filename</code>) if it does not exist or was built from a
+     * different lexicon map or WordNet version.
+     */
+    public static HypernymIndex load(String filename, String dictionaryPath, LexiconMap map) {
+        long fingerprint = fingerprint(dictionaryPath, map);
+        File file = new File(filename);
+        try {
+            if (file.exists()) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == fingerprint) {
+                        return read(in);
+                    }
+                } finally {
+                    in.close();
+                }
+                System.err.println("Rebuilding stale hypernym index: " + filename + ".");
+            }
+            HypernymIndex index = build(dictionaryPath, map);
+            index.save(file, fingerprint);
+            return index;
+        } catch (IOException ioe) {
+            throw new ResourceLoadException("Couldn't load HypernymIndex.", ioe);
+        }
+    }
+
+    private static HypernymIndex read(DataInputStream in) throws IOException {
+        LongIntMap synsets = LongIntMap.read(in);
+        int hits = in.readInt();
+        long[] hitOffsets = new long[hits];
+        String[] hitTargets = new String[hits];
+        String[] hitWords = new String[hits];
+        for (int i = 0; i < hits; i++) {
+            hitOffsets[i] = in.readLong();
+            hitTargets[i] = in.readUTF();
+            hitWords[i] = in.readUTF();
+        }
+        return new HypernymIndex(synsets, hitOffsets, hitTargets, hitWords);
+    }
+
+    private void save(File file, long fingerprint) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            synsets.write(out);
+            out.writeInt(hitOffsets.length);
+            for (int i = 0; i < hitOffsets.length; i++) {
+                out.writeLong(hitOffsets[i]);
+                out.writeUTF(hitTargets[i]);
+                out.writeUTF(hitWords[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Fingerprint of the lexicon map entries and of the WordNet data files
+     * (their sizes, which is enough to tell WordNet versions apart).
+     */
+    private static long fingerprint(String dictionaryPath, LexiconMap map) {
+        CRC32 crc = new CRC32();
+        long[] offsets = map.offsets();
+        Arrays.sort(offsets);
+        for (long offset : offsets) {
+            byte[] bytes = (offset + "=" + map.get(offset) + "\n").getBytes();
+            crc.update(bytes, 0, bytes.length);
+        }
+        long fingerprint = crc.getValue();
+        for (String posFile : POS_FILES) {
+            fingerprint = 31 * fingerprint + new File(dictionaryPath, "data." + posFile).length();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Builds the index of <code>map</code> from the WordNet data files in
+     * <code>dictionaryPath</code>.
+     */
+    public static HypernymIndex build(String dictionaryPath, LexiconMap map) throws IOException {
+        LongIntMap synsets = new LongIntMap(1 << 17, -1);
+        LongIntMap hitIndex = new LongIntMap(map.size(), -1);
+        List<Long> hitOffsets = new ArrayList<Long>();
+        List<String> hitTargets = new ArrayList<String>();
+        List<String> hitWords = new ArrayList<String>();
+
+        for (int pos = 0; pos < POS_LIST.length; pos++) {
+            File dataFile = new File(dictionaryPath, "data." + POS_FILES[pos]);
+            if (!dataFile.exists()) {
+                System.err.println("HypernymIndex: missing " + dataFile + ".");
+                continue;
+            }
+            WordNetDataFile data = new WordNetDataFile(dataFile, false);
+            int[] queue = new int[1024];
+            for (int node = 0; node < data.size; node++) {
+                // replays the breadth-first walk of WordNet.intersectMap1stSense
+                int head = 0;
+                int tail = 0;
+                int hops = 0;
+                int levelEnd = 1;
+                queue[tail++] = node;
+                int found = -1;
+                while (head < tail && head < MAX_STEPS) {
+                    if (head == levelEnd) {
+                        hops++;
+                        levelEnd = tail;
+                    }
+                    int current = queue[head++];
+                    if (map.get(data.offsets[current]) != null) {
+                        found = current;
+                        break;
+                    }
+                    for (int hypernym : data.hypernyms[current]) {
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, 2 * queue.length);
+                        }
+                        queue[tail++] = hypernym;
+                    }
+                }
+                if (found < 0) {
+                    continue;
+                }
+                long offset = data.offsets[found];
+                long hitKey = key(pos, offset);
+                int hit = hitIndex.get(hitKey);
+                if (hit < 0) {
+                    hit = hitOffsets.size();
+                    hitIndex.put(hitKey, hit);
+                    hitOffsets.add(offset);
+                    hitTargets.add(map.get(offset));
+                    hitWords.add(Utils.join(Arrays.asList(data.words[found]), ","));
+                }
+                synsets.put(key(pos, data.offsets[node]), (hit << 8) | Math.min(hops, 0xFF));
+            }
+        }
+
+        long[] offsets = new long[hitOffsets.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = hitOffsets.get(i);
+        }
+        return new HypernymIndex(synsets, offsets,
+                hitTargets.toArray(new String[hitTargets.size()]),
+                hitWords.toArray(new String[hitWords.size()]));
+    }
+
+    /**
+     * Returns the dictionary path set in a JWNL properties file.
+     */
+    public static String getDictionaryPath(String propertiesFile) {
+        try {
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(propertiesFile));
+            return XPathFactory.newInstance().newXPath().evaluate(
+                    "//param[@name='dictionary_path']/@value", doc);
+        } catch (Exception e) {
+            throw new ResourceLoadException("Couldn't read the dictionary path from " + propertiesFile + ".", e);
+        }
+    }
+
+    /**
+     * Builds the hypernym index for the lexicon map and WordNet files set in
+     * the configuration file (config/config_en.xml, by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Config.parseConfig(args.length > 0 ? args[0] : "config/config_en.xml");
+        String dictionaryPath = getDictionaryPath(Config.nlp_wordnetProperties);
+        LexiconMap map = new LexiconMap(Config.questionAnalysis_lexiconmapFile, Config.questionAnalysis_lexiconmapSnapshot);
+        long start = System.currentTimeMillis();
+        HypernymIndex index = build(dictionaryPath, map);
+        index.save(new File(Config.nlp_wordnetHypernymIndex), fingerprint(dictionaryPath, map));
+        System.out.println("Indexed " + index.size() + " synsets in "
+                + (System.currentTimeMillis() - start) + " ms: " + Config.nlp_wordnetHypernymIndex);
+    }
+}
@@ -1,17 +1,35 @@
 package l2f.nlp;
 
+import l2f.config.Config;
+
 public enum LexiconFactory {
 
     INSTANCE;
+
+    public enum LexiconType {
+
+        WORDNET, MAPPED_WORDNET
+    }
     Lexicon lexicon = null;
 
-    public Lexicon getLexicon() {
+    public synchronized Lexicon getLexicon() {
 
 
         if (lexicon == null) {
 
-            lexicon = new WordNet();
+            lexicon = newLexicon(LexiconType.valueOf(Config.nlp_lexiconType));
         }
         return lexicon;
     }
+
+    public static Lexicon newLexicon(LexiconType type) {
+        switch (type) {
+            case WORDNET:
+                return new WordNet();
+            case MAPPED_WORDNET:
+                return new MappedWordNet();
+            default:
+                throw new IllegalArgumentException("Unrecognized lexicon type: '" + type + "'.");
+        }
+    }
 }
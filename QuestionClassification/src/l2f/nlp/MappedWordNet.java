@@ -0,0 +1,1021 @@
+package l2f.nlp;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import com.aliasi.util.Pair;
+
+import net.didion.jwnl.data.POS;
+
+import l2f.config.Config;
+import l2f.interpretation.LexiconMap;
+import l2f.utils.LongIntMap;
+import l2f.utils.ResourceLoadException;
+import l2f.utils.Utils;
+
+/**
+ * This class provides a <code>Lexicon</code> implementation backed by a
+ * compact binary copy of the WordNet database files, which is memory-mapped
+ * instead of being read through JWNL's file dictionary.
+ *
+ * The binary file is built from the WordNet index, data and exception files
+ * the first time it is needed (or whenever they change), and holds, for each
+ * part of speech, the index words sorted by lemma, the synsets sorted by
+ * offset and the exception lists. Synsets, index words and their pointers
+ * are plain positions in the mapped buffer, so index word and synset lookups
+ * do not create any objects other than the strings they return. No lookup
+ * needs locking, but finding base forms and walking hyponyms do allocate
+ * working lists and strings.
+ *
+ * Base forms are found with WordNet's own rules (exception lists, suffix
+ * detachment and, for collocations, the base forms of each word). The rules
+ * are copies of the ones configured for JWNL in
+ * <code>file_properties.xml</code>, and must be kept in sync with it.
+ */
+public class MappedWordNet implements Lexicon {
+
+    private static final int MAGIC = 0x574E4231; // "WNB1"
+    private static final int VERSION = 1;
+    private static final POS[] POS_LIST = {POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB};
+    private static final String[] POS_FILES = {"noun", "verb", "adj", "adv"};
+    private static final int HEADER_SIZE = 16 + 4 * POS_LIST.length;
+    private static final int SECTION_HEADER_SIZE = 12;
+    /**
+     * Suffix detachment rules (suffix, replacement) for each part of speech.
+     */
+    private static final String[][][] SUFFIXES = {
+        {{"s", ""}, {"ses", "s"}, {"xes", "x"}, {"zes", "z"}, {"ches", "ch"}, {"shes", "sh"}, {"men", "man"}, {"ies", "y"}},
+        {{"s", ""}, {"ies", "y"}, {"es", "e"}, {"es", ""}, {"ed", "e"}, {"ed", ""}, {"ing", "e"}, {"ing", ""}},
+        {{"er", ""}, {"est", ""}, {"er", "e"}, {"est", "e"}},
+        {}
+    };
+    private static final String DELIMITERS = " -";
+    /**
+     * Hypernym walks longer than this are assumed to be cyclic.
+     */
+    private static final int MAX_STEPS = 100000;
+
+    private final ByteBuffer buffer;
+    /**
+     * Position of the tables of each part of speech in the buffer.
+     */
+    private final int[] sections = new int[POS_LIST.length];
+
+    /**
+     * Loads the binary WordNet in <code>filename</code>, building it from the
+     * WordNet files in <code>dictionaryPath</code> if needed.
+     */
+    public MappedWordNet(String dictionaryPath, String filename) {
+        try {
+            File file = new File(filename);
+            long fingerprint = fingerprint(dictionaryPath);
+            if (!isCurrent(file, fingerprint)) {
+                System.out.println("Building binary WordNet: " + filename + ".");
+                compile(dictionaryPath, file, fingerprint);
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            } finally {
+                raf.close();
+            }
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = buffer.getInt(16 + 4 * i);
+            }
+        } catch (IOException ioe) {
+            throw new ResourceLoadException("Couldn't load the binary WordNet.", ioe);
+        }
+    }
+
+    /**
+     * Uses the WordNet files set in the JWNL properties file and the binary
+     * file set in the configuration.
+     */
+    public MappedWordNet() {
+        this(HypernymIndex.getDictionaryPath(Config.nlp_wordnetProperties), Config.nlp_wordnetMappedFile);
+    }
+
+    /*
+     * File layout: a header (magic, version, fingerprint and the position of
+     * the tables of each part of speech), the tables, and the records they
+     * point to. All numbers are big-endian, and strings are a length
+     * followed by UTF-8 bytes.
+     *
+     * tables: synset count, index word count, exception count, then the
+     *   synset offsets (sorted) and the positions of the synset, index word
+     *   (sorted by lemma) and exception (sorted by word) records.
+     * synset: offset, word count, words (short length), hypernym count,
+     *   hypernym positions, hyponym count, hyponym positions, gloss (int length).
+     * index word: lemma (short length), sense count, synset positions.
+     * exception: word (short length), base form count, base forms (short length).
+     */
+    private static boolean isCurrent(File file, long fingerprint) throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.readInt() == MAGIC && raf.readInt() == VERSION && raf.readLong() == fingerprint;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Fingerprint of the WordNet files (their sizes, which is enough to tell
+     * WordNet versions apart).
+     */
+    private static long fingerprint(String dictionaryPath) {
+        long fingerprint = VERSION;
+        for (String posFile : POS_FILES) {
+            for (String name : new String[]{"data." + posFile, "index." + posFile, posFile + ".exc"}) {
+                fingerprint = 31 * fingerprint + new File(dictionaryPath, name).length();
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Builds the binary WordNet from the files in <code>dictionaryPath</code>.
+     */
+    public static void compile(String dictionaryPath, String filename) throws IOException {
+        compile(dictionaryPath, new File(filename), fingerprint(dictionaryPath));
+    }
+
+    private static void compile(String dictionaryPath, File file, long fingerprint) throws IOException {
+        WordNetDataFile[] data = new WordNetDataFile[POS_LIST.length];
+        List<List<Entry>> indexWords = new ArrayList<List<Entry>>();
+        List<List<Entry>> exceptions = new ArrayList<List<Entry>>();
+        for (int pos = 0; pos < POS_LIST.length; pos++) {
+            File dataFile = new File(dictionaryPath, "data." + POS_FILES[pos]);
+            if (dataFile.exists()) {
+                data[pos] = new WordNetDataFile(dataFile, true);
+            } else {
+                System.err.println("MappedWordNet: missing " + dataFile + ".");
+            }
+            List<Entry> entries = readEntries(new File(dictionaryPath, "index." + POS_FILES[pos]), true);
+            for (Entry entry : entries) {
+                // senses missing from the data file are dropped
+                for (Iterator<String> it = entry.values.iterator(); it.hasNext();) {
+                    if (data[pos] == null || data[pos].indexOf(Long.parseLong(it.next())) < 0) {
+                        it.remove();
+                    }
+                }
+            }
+            indexWords.add(entries);
+            exceptions.add(readEntries(new File(dictionaryPath, POS_FILES[pos] + ".exc"), false));
+        }
+
+        // positions of the tables and synset records
+        int position = HEADER_SIZE;
+        int[] sectionPositions = new int[POS_LIST.length];
+        for (int pos = 0; pos < POS_LIST.length; pos++) {
+            sectionPositions[pos] = position;
+            int synsets = data[pos] == null ? 0 : data[pos].size;
+            position += SECTION_HEADER_SIZE + 12 * synsets
+                    + 4 * (indexWords.get(pos).size() + exceptions.get(pos).size());
+        }
+        int[][] synsetPositions = new int[POS_LIST.length][];
+        for (int pos = 0; pos < POS_LIST.length; pos++) {
+            int synsets = data[pos] == null ? 0 : data[pos].size;
+            synsetPositions[pos] = new int[synsets];
+            for (int i = 0; i < synsets; i++) {
+                synsetPositions[pos][i] = position;
+                position += synsetSize(data[pos], i);
+            }
+        }
+
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            for (int sectionPosition : sectionPositions) {
+                out.writeInt(sectionPosition);
+            }
+            int records = position;
+            for (int pos = 0; pos < POS_LIST.length; pos++) {
+                int synsets = synsetPositions[pos].length;
+                out.writeInt(synsets);
+                out.writeInt(indexWords.get(pos).size());
+                out.writeInt(exceptions.get(pos).size());
+                for (int i = 0; i < synsets; i++) {
+                    out.writeLong(data[pos].offsets[i]);
+                }
+                for (int i = 0; i < synsets; i++) {
+                    out.writeInt(synsetPositions[pos][i]);
+                }
+                for (Entry entry : indexWords.get(pos)) {
+                    out.writeInt(records);
+                    records += entry.size(true);
+                }
+                for (Entry entry : exceptions.get(pos)) {
+                    out.writeInt(records);
+                    records += entry.size(false);
+                }
+            }
+            for (int pos = 0; pos < POS_LIST.length; pos++) {
+                WordNetDataFile d = data[pos];
+                for (int i = 0; i < synsetPositions[pos].length; i++) {
+                    out.writeInt((int) d.offsets[i]);
+                    out.writeShort(d.words[i].length);
+                    for (String word : d.words[i]) {
+                        writeShortString(out, word);
+                    }
+                    writePointers(out, d.hypernyms[i], synsetPositions[pos]);
+                    writePointers(out, d.hyponyms[i], synsetPositions[pos]);
+                    byte[] gloss = d.glosses[i].getBytes("UTF-8");
+                    out.writeInt(gloss.length);
+                    out.write(gloss);
+                }
+            }
+            for (int pos = 0; pos < POS_LIST.length; pos++) {
+                for (Entry entry : indexWords.get(pos)) {
+                    out.writeShort(entry.key.length);
+                    out.write(entry.key);
+                    out.writeShort(entry.values.size());
+                    for (String offset : entry.values) {
+                        out.writeInt(synsetPositions[pos][data[pos].indexOf(Long.parseLong(offset))]);
+                    }
+                }
+                for (Entry entry : exceptions.get(pos)) {
+                    out.writeShort(entry.key.length);
+                    out.write(entry.key);
+                    out.writeShort(entry.values.size());
+                    for (String base : entry.values) {
+                        writeShortString(out, base);
+                    }
+                }
+            }
+            if (out.size() != records) {
+                throw new IOException("Inconsistent binary WordNet layout: " + out.size() + " != " + records);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int synsetSize(WordNetDataFile data, int i) throws IOException {
+        int size = 4 + 2 + 2 + 4 * data.hypernyms[i].length + 2 + 4 * data.hyponyms[i].length + 4;
+        for (String word : data.words[i]) {
+            size += 2 + word.getBytes("UTF-8").length;
+        }
+        return size + data.glosses[i].getBytes("UTF-8").length;
+    }
+
+    private static void writeShortString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writePointers(DataOutputStream out, int[] targets, int[] synsetPositions) throws IOException {
+        out.writeShort(targets.length);
+        for (int target : targets) {
+            out.writeInt(synsetPositions[target]);
+        }
+    }
+
+    /**
+     * A line of an index file (lemma and synset offsets) or of an exception
+     * file (word and base forms).
+     */
+    private static class Entry {
+
+        private final byte[] key;
+        private final List<String> values;
+
+        Entry(byte[] key, List<String> values) {
+            this.key = key;
+            this.values = values;
+        }
+
+        int size(boolean indexWord) throws IOException {
+            if (indexWord) {
+                return 2 + key.length + 2 + 4 * values.size();
+            }
+            int size = 2 + key.length + 2;
+            for (String value : values) {
+                size += 2 + value.getBytes("UTF-8").length;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Reads an index or exception file, sorted by the byte order of the
+     * lemmas. Entries of the same word in an exception file are merged.
+     */
+    private static List<Entry> readEntries(File file, boolean index) throws IOException {
+        Map<String, List<String>> entries = new LinkedHashMap<String, List<String>>();
+        if (!file.exists()) {
+            System.err.println("MappedWordNet: missing " + file + ".");
+            return new ArrayList<Entry>();
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(" ") || line.length() == 0) {
+                    continue; // license
+                }
+                StringTokenizer tokens = new StringTokenizer(line, " ");
+                String key = tokens.nextToken();
+                List<String> values = entries.get(key);
+                if (values == null) {
+                    values = new ArrayList<String>();
+                    entries.put(key, values);
+                }
+                if (index) {
+                    // lemma pos synset_cnt p_cnt [ptr_symbol...] sense_cnt tagsense_cnt synset_offset...
+                    tokens.nextToken();
+                    int synsets = Integer.parseInt(tokens.nextToken());
+                    int pointers = Integer.parseInt(tokens.nextToken());
+                    for (int i = 0; i < pointers + 2; i++) {
+                        tokens.nextToken();
+                    }
+                    for (int i = 0; i < synsets; i++) {
+                        values.add(tokens.nextToken());
+                    }
+                } else {
+                    while (tokens.hasMoreTokens()) {
+                        values.add(tokens.nextToken());
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        List<Entry> result = new ArrayList<Entry>(entries.size());
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            result.add(new Entry(entry.getKey().getBytes("UTF-8"), entry.getValue()));
+        }
+        Collections.sort(result, new Comparator<Entry>() {
+
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return compareBytes(e1.key, e2.key);
+            }
+        });
+        return result;
+    }
+
+    private static int compareBytes(byte[] b1, byte[] b2) {
+        int n = Math.min(b1.length, b2.length);
+        for (int i = 0; i < n; i++) {
+            int c = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return b1.length - b2.length;
+    }
+
+    /*
+     * Raw access
+     */
+    private static int posIndex(POS pos) {
+        for (int i = 0; i < POS_LIST.length; i++) {
+            if (POS_LIST[i].equals(pos)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown POS: " + pos);
+    }
+
+    private int synsetCount(int pos) {
+        return buffer.getInt(sections[pos]);
+    }
+
+    private int indexWordCount(int pos) {
+        return buffer.getInt(sections[pos] + 4);
+    }
+
+    private int exceptionCount(int pos) {
+        return buffer.getInt(sections[pos] + 8);
+    }
+
+    private int indexWordTable(int pos) {
+        return sections[pos] + SECTION_HEADER_SIZE + 12 * synsetCount(pos);
+    }
+
+    private int exceptionTable(int pos) {
+        return indexWordTable(pos) + 4 * indexWordCount(pos);
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private String readShortString(int position) {
+        return readString(position + 2, buffer.getShort(position));
+    }
+
+    /**
+     * Compares the string (with a short length) at <code>position</code>
+     * with <code>key</code>.
+     */
+    private int compare(int position, byte[] key) {
+        int length = buffer.getShort(position);
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int c = (buffer.get(position + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Binary search of <code>key</code> in a table of record positions.
+     */
+    private int find(int table, int count, byte[] key) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = buffer.getInt(table + 4 * mid);
+            int c = compare(record, key);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] key(String lemma) {
+        try {
+            return lemma.replace(' ', '_').getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException uee) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    /*
+     * Index words
+     */
+    /**
+     * Returns the index word for the exact <code>lemma</code>, or -1 if
+     * there is none.
+     */
+    private int getIndexWord(int pos, String lemma) {
+        if (lemma.length() == 0) {
+            return -1;
+        }
+        return find(indexWordTable(pos), indexWordCount(pos), key(lemma));
+    }
+
+    /**
+     * Looks up the index word of <code>word</code>, or of its base form if
+     * <code>word</code> is not in WordNet.
+     *
+     * @return the index word, or -1 if there is none
+     */
+    public int lookupIndexWord(POS pos, String word) {
+        int p = posIndex(pos);
+        String lemma = word.trim().toLowerCase();
+        int indexWord = getIndexWord(p, lemma);
+        return indexWord >= 0 ? indexWord : lookupBaseForm(p, lemma);
+    }
+
+    /**
+     * Finds the index word of a base form of <code>lemma</code>: first in
+     * the exception list, then detaching suffixes and finally, for
+     * collocations, combining the base forms of each word.
+     */
+    private int lookupBaseForm(int pos, String lemma) {
+        int indexWord = lookupExceptions(pos, lemma);
+        if (indexWord < 0) {
+            indexWord = detachSuffixes(pos, lemma);
+        }
+        if (indexWord < 0) {
+            indexWord = lookupCollocation(pos, lemma);
+        }
+        return indexWord;
+    }
+
+    /**
+     * Returns the base forms of <code>lemma</code> in the exception list.
+     */
+    private List<String> getExceptions(int pos, String lemma) {
+        int exception = find(exceptionTable(pos), exceptionCount(pos), key(lemma));
+        if (exception < 0) {
+            return Collections.emptyList();
+        }
+        int position = exception + 2 + buffer.getShort(exception);
+        int count = buffer.getShort(position);
+        position += 2;
+        List<String> bases = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            bases.add(readShortString(position).replace('_', ' '));
+            position += 2 + buffer.getShort(position);
+        }
+        return bases;
+    }
+
+    private int lookupExceptions(int pos, String lemma) {
+        for (String base : getExceptions(pos, lemma)) {
+            int indexWord = getIndexWord(pos, base);
+            if (indexWord >= 0) {
+                return indexWord;
+            }
+        }
+        return -1;
+    }
+
+    private int detachSuffixes(int pos, String lemma) {
+        for (String[] suffix : SUFFIXES[pos]) {
+            if (lemma.endsWith(suffix[0])) {
+                String base = lemma.substring(0, lemma.length() - suffix[0].length()) + suffix[1];
+                int indexWord = getIndexWord(pos, base);
+                if (indexWord < 0) {
+                    indexWord = lookupExceptions(pos, base);
+                }
+                if (indexWord >= 0) {
+                    return indexWord;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as JWNL's <code>TokenizerOperation</code>: looks up the longest
+     * run of words, starting from the first one, that has an index word
+     * when each word is replaced by one of its base forms.
+     */
+    private int lookupCollocation(int pos, String lemma) {
+        List<List<String>> forms = new ArrayList<List<String>>();
+        StringTokenizer tokenizer = new StringTokenizer(lemma, DELIMITERS);
+        while (tokenizer.hasMoreTokens()) {
+            forms.add(getTokenForms(pos, tokenizer.nextToken()));
+        }
+        if (forms.size() < 2) {
+            return -1;
+        }
+        for (int start = 0; start < forms.size(); start++) {
+            for (int end = forms.size() - 1; end >= start; end--) {
+                int indexWord = combine(pos, forms, start, end, start, new StringBuilder[DELIMITERS.length()]);
+                if (indexWord >= 0) {
+                    return indexWord;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a word followed by its base forms, without duplicates.
+     */
+    private List<String> getTokenForms(int pos, String token) {
+        List<String> forms = new ArrayList<String>();
+        forms.add(token);
+        addForms(forms, getExceptions(pos, token));
+        for (String[] suffix : SUFFIXES[pos]) {
+            if (token.endsWith(suffix[0])) {
+                String base = token.substring(0, token.length() - suffix[0].length()) + suffix[1];
+                if (getIndexWord(pos, base) >= 0) {
+                    addForms(forms, Collections.singletonList(base));
+                }
+                addForms(forms, getExceptions(pos, base));
+            }
+        }
+        return forms;
+    }
+
+    private static void addForms(List<String> forms, List<String> newForms) {
+        for (String form : newForms) {
+            if (!forms.contains(form)) {
+                forms.add(form);
+            }
+        }
+    }
+
+    /**
+     * Tries every combination of the forms of the words from
+     * <code>start</code> to <code>end</code>, joined by each delimiter.
+     */
+    private int combine(int pos, List<List<String>> forms, int start, int end, int i, StringBuilder[] prefixes) {
+        int[] lengths = new int[prefixes.length];
+        for (int d = 0; d < prefixes.length; d++) {
+            if (prefixes[d] == null) {
+                prefixes[d] = new StringBuilder();
+            }
+            lengths[d] = prefixes[d].length();
+        }
+        for (String form : forms.get(i)) {
+            for (int d = 0; d < prefixes.length; d++) {
+                prefixes[d].setLength(lengths[d]);
+                if (i > start) {
+                    prefixes[d].append(DELIMITERS.charAt(d));
+                }
+                prefixes[d].append(form);
+            }
+            if (i < end) {
+                int indexWord = combine(pos, forms, start, end, i + 1, prefixes);
+                if (indexWord >= 0) {
+                    return indexWord;
+                }
+            } else {
+                for (StringBuilder prefix : prefixes) {
+                    int indexWord = getIndexWord(pos, prefix.toString());
+                    if (indexWord >= 0) {
+                        return indexWord;
+                    }
+                }
+            }
+        }
+        for (int d = 0; d < prefixes.length; d++) {
+            prefixes[d].setLength(lengths[d]);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the lemma of an index word, with spaces between words.
+     */
+    public String getLemma(int indexWord) {
+        return readShortString(indexWord).replace('_', ' ');
+    }
+
+    public int getSenseCount(int indexWord) {
+        return buffer.getShort(indexWord + 2 + buffer.getShort(indexWord));
+    }
+
+    /**
+     * Returns the synset of the <code>i</code>-th sense (starting at 0) of
+     * an index word.
+     */
+    public int getSense(int indexWord, int i) {
+        return buffer.getInt(indexWord + 2 + buffer.getShort(indexWord) + 2 + 4 * i);
+    }
+
+    /*
+     * Synsets
+     */
+    public long getOffset(int synset) {
+        return buffer.getInt(synset) & 0xFFFFFFFFL;
+    }
+
+    public int getWordCount(int synset) {
+        return buffer.getShort(synset + 4);
+    }
+
+    /**
+     * Returns the words of a synset, as returned by JWNL's
+     * <code>Word.getLemma()</code>.
+     */
+    public String getWord(int synset, int i) {
+        int position = synset + 6;
+        for (int j = 0; j < i; j++) {
+            position += 2 + buffer.getShort(position);
+        }
+        return readShortString(position);
+    }
+
+    private int hypernymsPosition(int synset) {
+        int position = synset + 6;
+        int words = getWordCount(synset);
+        for (int j = 0; j < words; j++) {
+            position += 2 + buffer.getShort(position);
+        }
+        return position;
+    }
+
+    private int hyponymsPosition(int synset) {
+        int position = hypernymsPosition(synset);
+        return position + 2 + 4 * buffer.getShort(position);
+    }
+
+    public int getHypernymCount(int synset) {
+        return buffer.getShort(hypernymsPosition(synset));
+    }
+
+    public int getHypernym(int synset, int i) {
+        return buffer.getInt(hypernymsPosition(synset) + 2 + 4 * i);
+    }
+
+    public int getHyponymCount(int synset) {
+        return buffer.getShort(hyponymsPosition(synset));
+    }
+
+    public int getHyponym(int synset, int i) {
+        return buffer.getInt(hyponymsPosition(synset) + 2 + 4 * i);
+    }
+
+    public String getGloss(int synset) {
+        int position = hyponymsPosition(synset);
+        position += 2 + 4 * buffer.getShort(position);
+        return readString(position + 4, buffer.getInt(position));
+    }
+
+    /**
+     * Returns the synset with the given offset, or -1 if there is none.
+     */
+    public int getSynsetAt(POS pos, long offset) {
+        int p = posIndex(pos);
+        int offsets = sections[p] + SECTION_HEADER_SIZE;
+        int low = 0;
+        int high = synsetCount(p) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = buffer.getLong(offsets + 8 * mid);
+            if (value < offset) {
+                low = mid + 1;
+            } else if (value > offset) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(offsets + 8 * synsetCount(p) + 4 * mid);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the first synset of a given word, which represents the most
+     * frequent one, or -1.
+     */
+    private int getSynset(String word, POS pos) {
+        if (word == null) {
+            return -1;
+        }
+        int indexWord = lookupIndexWord(pos, word);
+        if (indexWord < 0 || getSenseCount(indexWord) == 0) {
+            return -1;
+        }
+        return getSense(indexWord, 0);
+    }
+
+    private String getWords(int synset) {
+        StringBuilder ws = new StringBuilder();
+        int words = getWordCount(synset);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                ws.append(',');
+            }
+            ws.append(getWord(synset, i));
+        }
+        return ws.toString();
+    }
+
+    /*
+     * Lexicon
+     */
+    @Override
+    public List<String> getSynonyms(String word) {
+        List<String> synonyms = new ArrayList<String>();
+        if (word != null && !word.equalsIgnoreCase("")) {
+            for (POS pos : POS_LIST) {
+                addSynonyms(synonyms, word, pos);
+            }
+        }
+        return synonyms;
+    }
+
+    @Override
+    public List<String> getSynonyms(String word, POS pos) {
+        List<String> synonyms = new ArrayList<String>();
+        addSynonyms(synonyms, word, pos);
+        return synonyms;
+    }
+
+    private void addSynonyms(List<String> synonyms, String word, POS pos) {
+        int indexWord = lookupIndexWord(pos, word);
+        if (indexWord < 0) {
+            return;
+        }
+        int senses = getSenseCount(indexWord);
+        for (int i = 0; i < senses; i++) {
+            int synset = getSense(indexWord, i);
+            int words = getWordCount(synset);
+            for (int j = 0; j < words; j++) {
+                synonyms.add(getWord(synset, j));
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getCommonHypernyms(String[] words) {
+        Set<String> overlap = new HashSet<String>();
+        boolean isFirst = true;
+        int[] queue = new int[64];
+        for (String word : words) {
+            Set<String> current = new HashSet<String>();
+            int synset = getSynset(word, POS.NOUN); // 1st sense
+            if (synset < 0) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue = enqueueHypernyms(queue, tail, synset);
+            tail += getHypernymCount(synset);
+            while (head < tail && head < MAX_STEPS) {
+                int target = queue[head++];
+                int count = getWordCount(target);
+                for (int i = 0; i < count; i++) {
+                    String lemma = getWord(target, i);
+                    if (isFirst) {
+                        overlap.add(lemma);
+                    }
+                    current.add(lemma);
+                }
+                queue = enqueueHypernyms(queue, tail, target);
+                tail += getHypernymCount(target);
+            }
+            overlap.retainAll(current);
+            isFirst = false;
+        }
+        return overlap;
+    }
+
+    /**
+     * Appends the hypernyms of <code>synset</code> to <code>queue</code>, at
+     * <code>tail</code>, growing it if needed.
+     */
+    private int[] enqueueHypernyms(int[] queue, int tail, int synset) {
+        int count = getHypernymCount(synset);
+        if (tail + count > queue.length) {
+            int[] grown = new int[Math.max(2 * queue.length, tail + count)];
+            System.arraycopy(queue, 0, grown, 0, tail);
+            queue = grown;
+        }
+        for (int i = 0; i < count; i++) {
+            queue[tail + i] = getHypernym(synset, i);
+        }
+        return queue;
+    }
+
+    @Override
+    public List<String> getFullHyponym(String word, int maxDepth) {
+        List<String> hyponyms = new ArrayList<String>();
+        int synset = getSynset(word, POS.NOUN); // 1st sense
+        if (synset < 0) {
+            return hyponyms;
+        }
+        HyponymDepths depths = new HyponymDepths();
+        List<Integer> queue = new ArrayList<Integer>();
+        int count = getHyponymCount(synset);
+        for (int i = 0; i < count; i++) {
+            queue.add(getHyponym(synset, i));
+            depths.put(getHyponym(synset, i), 0);
+        }
+        int head = 0;
+        while (head < queue.size() && depths.max() < maxDepth) {
+            int target = queue.get(head++);
+            int words = getWordCount(target);
+            for (int i = 0; i < words; i++) {
+                hyponyms.add(getWord(target, i).replace('_', ' '));
+            }
+            int depth = depths.get(target) + 1;
+            count = getHyponymCount(target);
+            for (int i = 0; i < count; i++) {
+                queue.add(getHyponym(target, i));
+                depths.put(getHyponym(target, i), depth);
+            }
+        }
+        return hyponyms;
+    }
+
+    /**
+     * Depth of each hyponym found so far, keeping track of the deepest one.
+     */
+    private static class HyponymDepths {
+
+        private final LongIntMap depths = new LongIntMap(-1);
+        private int[] counts = new int[16];
+        private int max = -1;
+
+        int get(int synset) {
+            return depths.get(synset);
+        }
+
+        void put(int synset, int depth) {
+            int previous = depths.put(synset, depth);
+            if (previous >= 0) {
+                counts[previous]--;
+            }
+            if (depth >= counts.length) {
+                int[] grown = new int[2 * depth];
+                System.arraycopy(counts, 0, grown, 0, counts.length);
+                counts = grown;
+            }
+            counts[depth]++;
+            max = Math.max(max, depth);
+            while (max >= 0 && counts[max] == 0) {
+                max--;
+            }
+        }
+
+        int max() {
+            return max;
+        }
+    }
+
+    @Override
+    public List<String> getFullHyponym(String word) {
+        return getFullHyponym(word, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean hasWord(String word) {
+        int indexWord = lookupIndexWord(POS.NOUN, word);
+        /* See WordNet.hasWord: the base form of a collocation can lose
+         * words, such as "real birthday" into "real".
+         */
+        return indexWord >= 0
+                && Utils.countWhitespaces(getLemma(indexWord)) == Utils.countWhitespaces(word);
+    }
+
+    @Override
+    public String getGloss(String word) {
+        int synset = getSynset(word, POS.NOUN); // 1st sense
+        return synset < 0 ? Utils.EMPTY : getGloss(synset);
+    }
+
+    @Override
+    public String getName() {
+        return "WordNet 3.0";
+    }
+
+    @Override
+    public Pair<Long, String> intersectMap(String word, POS pos, LexiconMap map, boolean allsenses) {
+        int indexWord = lookupIndexWord(pos, word);
+        if (indexWord < 0 || getSenseCount(indexWord) == 0) {
+            System.err.println("Unable to find the word '"
+                    + word + "/" + pos + "' in WordNet.");
+            return null;
+        }
+        int senses = allsenses ? getSenseCount(indexWord) : 1;
+        int[] queue = new int[64];
+        for (int i = 0; i < senses; i++) {
+            int headSynset = getSense(indexWord, i);
+            long targetOffset = getOffset(headSynset);
+            String targetString = map.get(targetOffset);
+            if (targetString != null) {
+                return new Pair<Long, String>(targetOffset, targetString + ":::" + (i + 1) + "sense[" + getWords(headSynset) + "]");
+            }
+            int head = 0;
+            int tail = 0;
+            queue = enqueueHypernyms(queue, tail, headSynset);
+            tail += getHypernymCount(headSynset);
+            while (head < tail && head < MAX_STEPS) {
+                int targetSynset = queue[head++];
+                targetOffset = getOffset(targetSynset);
+                targetString = map.get(targetOffset);
+                if (targetString != null) {
+                    return new Pair<Long, String>(targetOffset, targetString + ":::" + (i + 1) + "sense.hypernyms[" + getWords(targetSynset) + "]");
+                }
+                queue = enqueueHypernyms(queue, tail, targetSynset);
+                tail += getHypernymCount(targetSynset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the binary WordNet set in the configuration file
+     * (config/config_en.xml, by default).
+     */
+    public static void main(String[] args) throws IOException {
+        Config.parseConfig(args.length > 0 ? args[0] : "config/config_en.xml");
+        long start = System.currentTimeMillis();
+        compile(HypernymIndex.getDictionaryPath(Config.nlp_wordnetProperties), Config.nlp_wordnetMappedFile);
+        System.out.println("Built " + Config.nlp_wordnetMappedFile + " in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+}
@@ -51,14 +51,7 @@ public class PTBTokenizer implements Tokenizer {
         if (line == null) {
             return tokenized;
         }
-        zzBuffer = line.toCharArray();
-        zzStartRead = 0;
-        zzEndRead = zzBuffer.length;
-        zzAtBOL = true;
-        zzAtEOF = false;
-        zzCurrentPos = zzMarkedPos = zzPushbackPos = 0;
-        yyline = yychar = yycolumn = 0;
-        zzLexicalState = YYINITIAL;
+        reset(line.toCharArray(), line.length());
         while (zzMarkedPos < zzEndRead) {
             FeatureLabel token = next();
             if (token != null) {
@@ -68,6 +61,50 @@ public class PTBTokenizer implements Tokenizer {
         return tokenized;
     }
 
+    /**
+     * Tokenizes <code>text</code> into <code>spans</code>, which is cleared
+     * first, as offsets into <code>text</code> instead of strings (see
+     * <code>TokenSpans</code>). The tokens are those of
+     * <code>tokenize</code>.
+     */
+    public void tokenize(CharSequence text, TokenSpans spans) {
+        spans.clear(text);
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        char[] buffer = zzBuffer.length >= length ? zzBuffer : new char[length];
+        if (text instanceof String) {
+            ((String) text).getChars(0, length, buffer, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = text.charAt(i);
+            }
+        }
+        reset(buffer, length);
+        this.spans = spans;
+        try {
+            while (zzMarkedPos < zzEndRead) {
+                next();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("A problem has occurred while tokenizing '" + text + "'.");
+        } finally {
+            this.spans = null;
+        }
+    }
+
+    private void reset(char[] buffer, int length) {
+        zzBuffer = buffer;
+        zzStartRead = 0;
+        zzEndRead = length;
+        zzAtBOL = true;
+        zzAtEOF = false;
+        zzCurrentPos = zzMarkedPos = zzPushbackPos = 0;
+        yyline = yychar = yycolumn = 0;
+        zzLexicalState = YYINITIAL;
+    }
+
     private boolean zzRefill() throws java.io.IOException {
         return true;
     }
@@ -5132,12 +5169,56 @@ public class PTBTokenizer implements Tokenizer {
     private boolean tokenizeCRs;
     private boolean suppressEscaping;
     private FeatureLabel prevWord = new FeatureLabel();
+    /**
+     * Buffer the tokens are added to, without creating them, while
+     * tokenizing into spans.
+     */
+    private TokenSpans spans;
+    /**
+     * Returned instead of the tokens while tokenizing into spans.
+     */
+    private static final FeatureLabel SPAN = new FeatureLabel();
 
     private FeatureLabel getNext() {
+        if (spans != null) {
+            spans.add(yychar, yychar + yylength(), null, false);
+            return SPAN;
+        }
         return getNext(yytext(), yytext());
     }
 
+    /**
+     * Returns a word to be converted to American spelling.
+     */
+    private FeatureLabel getNextAmericanized() {
+        if (spans != null) {
+            spans.add(yychar, yychar + yylength(), null, true);
+            return SPAN;
+        }
+        String word = Americanize.americanize(yytext());
+        return getNext(word, yytext());
+    }
+
+    /**
+     * Returns whether <code>txt</code> is the matched text.
+     */
+    private boolean isText(String txt) {
+        if (txt.length() != yylength()) {
+            return false;
+        }
+        for (int i = 0; i < txt.length(); i++) {
+            if (zzBuffer[zzStartRead + i] != txt.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private FeatureLabel getNext(String txt, String current) {
+        if (spans != null) {
+            spans.add(yychar, yychar + yylength(), isText(txt) ? null : txt, false);
+            return SPAN;
+        }
         if (!invertable) {
             return tokenFactory.makeToken(txt, yychar, yylength());
         }
@@ -5472,8 +5553,7 @@ public class PTBTokenizer implements Tokenizer {
                     break;
                 case 6: {
                     if (!suppressEscaping) {
-                        String word = Americanize.americanize(yytext());
-                        return getNext(word, yytext());
+                        return getNextAmericanized();
                     } else {
                         return getNext();
                     }
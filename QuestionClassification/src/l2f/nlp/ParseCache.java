@@ -0,0 +1,198 @@
+package l2f.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.berkeley.nlp.ling.Tree;
+
+/**
+ * Bounded, least-recently-used cache of parse trees, keyed by the tokens
+ * of the sentence (and the part-of-speech tags, for constrained parses).
+ * It can be shared by several <code>Parser</code> instances and accessed
+ * concurrently.
+ *
+ * The cache holds at most a given number of entries and, optionally, an
+ * (estimated) number of bytes. Trees are copied when stored and when
+ * returned, so callers are free to modify them.
+ */
+public class ParseCache {
+
+    /*
+     * Rough memory footprint of a tree node and of a string, used to
+     * estimate the size of the entries.
+     */
+    private static final int NODE_BYTES = 64;
+    private static final int STRING_BYTES = 48;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long bytes = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of cached trees
+     * @param maxBytes maximum estimated size of the cache, in bytes
+     * (0 for no limit)
+     */
+    public ParseCache(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes <= 0 ? Long.MAX_VALUE : maxBytes;
+    }
+
+    /**
+     * Returns a copy of the cached parse of <code>tokens</code>, or null if
+     * there is none.
+     *
+     * @param tokens sentence tokens
+     * @param tags part-of-speech tags the parse was constrained to, or null
+     */
+    public Tree<String> get(List<String> tokens, List<String> tags) {
+        Key key = new Key(tokens, tags);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(entry.tree);
+    }
+
+    /**
+     * Stores a copy of the parse of <code>tokens</code>, evicting the least
+     * recently used entries if the cache is full.
+     */
+    public void put(List<String> tokens, List<String> tags, Tree<String> tree) {
+        Key key = new Key(tokens, tags);
+        Entry entry = new Entry(copy(tree), key.bytes() + bytes(tree));
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.bytes;
+            }
+            bytes += entry.bytes;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().bytes;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated size of the cached entries, in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return size() + " parses (~" + getBytes() / 1024 + " KB), " + hits.get() + " hits, "
+                + misses.get() + " misses, " + evictions.get() + " evictions";
+    }
+
+    private static Tree<String> copy(Tree<String> tree) {
+        List<Tree<String>> children = new ArrayList<Tree<String>>(tree.getChildren().size());
+        for (Tree<String> child : tree.getChildren()) {
+            children.add(copy(child));
+        }
+        return new Tree<String>(tree.getLabel(), children);
+    }
+
+    private static long bytes(Tree<String> tree) {
+        long size = NODE_BYTES + STRING_BYTES + 2 * tree.getLabel().length();
+        for (Tree<String> child : tree.getChildren()) {
+            size += bytes(child);
+        }
+        return size;
+    }
+
+    private static class Entry {
+
+        private final Tree<String> tree;
+        private final long bytes;
+
+        Entry(Tree<String> tree, long bytes) {
+            this.tree = tree;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Immutable copy of the tokens (and tags) of a sentence.
+     */
+    private static class Key {
+
+        private final String[] tokens;
+        private final String[] tags;
+        private final int hash;
+
+        Key(List<String> tokens, List<String> tags) {
+            this.tokens = tokens.toArray(new String[tokens.size()]);
+            this.tags = tags == null ? null : tags.toArray(new String[tags.size()]);
+            this.hash = 31 * Arrays.hashCode(this.tokens) + Arrays.hashCode(this.tags);
+        }
+
+        long bytes() {
+            long size = NODE_BYTES;
+            for (String token : tokens) {
+                size += STRING_BYTES + 2 * token.length();
+            }
+            if (tags != null) {
+                size += tags.length * STRING_BYTES;
+            }
+            return size;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && Arrays.equals(tokens, other.tokens)
+                    && Arrays.equals(tags, other.tags);
+        }
+    }
+}
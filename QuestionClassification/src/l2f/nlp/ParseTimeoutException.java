@@ -0,0 +1,12 @@
+package l2f.nlp;
+
+/**
+ * ParseTimeoutException is thrown when a sentence could not be parsed
+ * within the time given to the <code>Parser</code>.
+ */
+public class ParseTimeoutException extends RuntimeException {
+	public ParseTimeoutException(String message) {
+		super(message);
+	}
+	private static final long serialVersionUID = -3906253518404384727L;
+}
@@ -1,12 +1,15 @@
 package l2f.nlp;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import edu.berkeley.nlp.PCFGLA.CoarseToFineMaxRuleParser;
 import edu.berkeley.nlp.PCFGLA.Grammar;
 import edu.berkeley.nlp.PCFGLA.Lexicon;
 import edu.berkeley.nlp.PCFGLA.TreeAnnotations;
 import edu.berkeley.nlp.ling.Tree;
+import edu.berkeley.nlp.util.Numberer;
 
 /**
  * "Wrapper" for the Berkeley Parser, which requires a serialized
@@ -19,19 +22,185 @@ import edu.berkeley.nlp.ling.Tree;
  */
 public class Parser extends CoarseToFineMaxRuleParser {
 
+	/*
+	 * Construction arguments, kept so that new instances sharing the same
+	 * grammar and lexicon can be created (see newInstance()).
+	 */
+	private final Grammar grammar;
+	private final Lexicon lexicon;
+	private final double unaryPenalty;
+	private final int endLevel;
+	private final boolean viterbi;
+	private final boolean substates;
+	private final boolean scores;
+	private final boolean accurate;
+	private final boolean variational;
+	private final boolean useGoldPOS;
+	/**
+	 * Cache of previous parses, possibly shared with other instances, or
+	 * null if parses are not cached.
+	 */
+	private ParseCache cache;
+	/**
+	 * Time (as given by System.nanoTime()) after which the current parse is
+	 * abandoned, if hasDeadline is set.
+	 */
+	private long deadline;
+	private boolean hasDeadline;
+
 	public Parser(Grammar gr, Lexicon lex, double unaryPenalty, int endL,
 			boolean viterbi, boolean sub, boolean score, boolean accurate,
 			boolean variational, boolean useGoldPOS, boolean initializeCascade) {
 		super(gr, lex, unaryPenalty, endL, viterbi, sub, score, accurate, variational,
 				useGoldPOS, initializeCascade);
+		this.grammar = gr;
+		this.lexicon = lex;
+		this.unaryPenalty = unaryPenalty;
+		this.endLevel = endL;
+		this.viterbi = viterbi;
+		this.substates = sub;
+		this.scores = score;
+		this.accurate = accurate;
+		this.variational = variational;
+		this.useGoldPOS = useGoldPOS;
+	}
+
+	/**
+	 * Creates a new parser that shares the (read-only) grammar, lexicon and
+	 * coarse-to-fine cascade of this one, but has its own parse charts.
+	 * A single parser is not thread-safe, so each thread must use its
+	 * own instance.
+	 */
+	@Override
+	public Parser newInstance() {
+		Parser parser = new Parser(grammar, lexicon, unaryPenalty, endLevel, viterbi,
+				substates, scores, accurate, variational, useGoldPOS, false);
+		parser.initCascade(this);
+		parser.setCache(cache);
+		return parser;
+	}
+
+	public ParseCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets the cache used to look up sentences before parsing them.
+	 * @param cache parse cache, or null to disable caching
+	 */
+	public void setCache(ParseCache cache) {
+		this.cache = cache;
 	}
 	
 	@Override
 	public Tree<String> getBestParse(List<String> sentence) {
+		if (cache != null) {
+			Tree<String> cached = cache.get(sentence, null);
+			if (cached != null) {
+				return cached;
+			}
+		}
 		Tree<String> parsedTree = super.getBestParse(sentence);
 		parsedTree = TreeAnnotations.unAnnotateTree(parsedTree);
+		if (cache != null) {
+			cache.put(sentence, null, parsedTree);
+		}
 		return parsedTree;
 	}
+
+	/**
+	 * Parses a sentence, giving up if the parse takes longer than
+	 * <code>timeout</code>. The parse is only interrupted between the
+	 * passes of the coarse-to-fine cascade, so it may run over the
+	 * timeout by the duration of one pass.
+	 * @param sentence list of tokens
+	 * @param timeout maximum parse time, or 0 for no limit
+	 * @param unit unit of <code>timeout</code>
+	 * @return a parse tree
+	 * @throws ParseTimeoutException if the timeout expires
+	 */
+	public Tree<String> getBestParse(List<String> sentence, long timeout, TimeUnit unit) {
+		return getBestParse(sentence, null, timeout, unit);
+	}
+
+	/**
+	 * Parses a sentence using "gold" part-of-speech tags, if given, giving
+	 * up if the parse takes longer than <code>timeout</code> (see
+	 * {@link #getBestParse(List, long, TimeUnit)}).
+	 * @param sentence list of tokens
+	 * @param posTags list of part-of-speech tags for each token, or null
+	 * @param timeout maximum parse time, or 0 for no limit
+	 * @param unit unit of <code>timeout</code>
+	 * @return a parse tree
+	 * @throws ParseTimeoutException if the timeout expires
+	 */
+	public Tree<String> getBestParse(List<String> sentence, List<String> posTags, long timeout, TimeUnit unit) {
+		if (timeout > 0) {
+			deadline = System.nanoTime() + unit.toNanos(timeout);
+			hasDeadline = true;
+		}
+		try {
+			return posTags == null ? getBestParse(sentence) : getBestParse(sentence, posTags);
+		} finally {
+			hasDeadline = false;
+		}
+	}
+
+	/**
+	 * Tags each token with its most likely part-of-speech in the lexicon,
+	 * regardless of context. Much faster than parsing, but less accurate
+	 * than the tags of the parse tree.
+	 * @param sentence list of tokens
+	 * @return a part-of-speech tag for each token
+	 */
+	public List<String> tag(List<String> sentence) {
+		Numberer tagNumberer = Numberer.getGlobalNumberer("tags");
+		List<String> tags = new ArrayList<String>(sentence.size());
+		for (int i = 0; i < sentence.size(); i++) {
+			String word = sentence.get(i);
+			short bestTag = -1;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (short tag = 0; tag < grammar.numStates; tag++) {
+				if (grammar.isGrammarTag(tag)) {
+					continue;
+				}
+				double[] scores = lexicon.score(word, tag, i, false, false);
+				double score = 0;
+				for (double s : scores) {
+					score += lexicon.isLogarithmMode() ? Math.exp(s) : s;
+				}
+				if (score > bestScore) {
+					bestScore = score;
+					bestTag = tag;
+				}
+			}
+			tags.add((String) tagNumberer.object(bestTag));
+		}
+		return tags;
+	}
+
+	/*
+	 * The cascade prunes the chart after each coarse pass and creates the
+	 * arrays of the final pass, so the deadline is checked there.
+	 */
+	@Override
+	protected void pruneChart(double threshold, short[] numSubStatesArray, int level) {
+		checkDeadline();
+		super.pruneChart(threshold, numSubStatesArray, level);
+	}
+
+	@Override
+	protected void createArrays(boolean firstTime, int numStates, short[] numSubStatesArray,
+			int level, double initVal, boolean justInit) {
+		checkDeadline();
+		super.createArrays(firstTime, numStates, numSubStatesArray, level, initVal, justInit);
+	}
+
+	private void checkDeadline() {
+		if (hasDeadline && System.nanoTime() - deadline > 0) {
+			throw new ParseTimeoutException("Parse timed out.");
+		}
+	}
 	
 	/**
 	 * Parses a sentence using "gold" part-of-speech tags.
@@ -40,12 +209,21 @@ public class Parser extends CoarseToFineMaxRuleParser {
 	 * @return a parse tree
 	 */
 	public Tree<String> getBestParse(List<String> sentence, List<String> posTags) {
+		if (cache != null) {
+			Tree<String> cached = cache.get(sentence, posTags);
+			if (cached != null) {
+				return cached;
+			}
+		}
 		Tree<String> parsedTree = super.getBestConstrainedParse(sentence, posTags, false);
 		if (parsedTree.getChildren().isEmpty()) {
 			System.err.println("Warning: unable to use gold pos tags in '" + sentence + "'.");
 			parsedTree = super.getBestConstrainedParse(sentence, null, false);
 		}
 		parsedTree = TreeAnnotations.unAnnotateTree(parsedTree);
+		if (cache != null) {
+			cache.put(sentence, posTags, parsedTree);
+		}
 		return parsedTree;
 	}
 }
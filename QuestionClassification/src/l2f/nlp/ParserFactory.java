@@ -10,11 +10,18 @@ import edu.berkeley.nlp.PCFGLA.BerkeleyParser.Options;
 import edu.berkeley.nlp.ling.Tree;
 import edu.berkeley.nlp.util.Numberer;
 
+import l2f.config.Config;
+
 /**
  * Factory for creating instances of the Berkeley Parser, using
  * a caching mechanism to avoid loading two instances of the same 
  * serialized grammar file.
  * 
+ * Parsers are not thread-safe: concurrent callers should use
+ * {@link #newParser(String)} to obtain one instance per thread. All the
+ * parsers for a grammar share the same <code>ParseCache</code>, if one is
+ * configured.
+ * 
  * @author Jo�o
  */
 public enum ParserFactory {
@@ -34,9 +41,25 @@ public enum ParserFactory {
 			    parser = new Parser(grammar, pData.getLexicon(), threshold,-1,opts.viterbi,
 			    		opts.substates, opts.scores, opts.accurate, false, true, true);
 			    //parser.binarization = pData.getBinarization();
+			    if (Config.nlp_parserCacheEntries > 0) {
+			    	parser.setCache(new ParseCache(Config.nlp_parserCacheEntries,
+			    			Config.nlp_parserCacheBytes));
+			    }
 				grammarToParser.put(grammarFile, parser);
 			}
 			return parser;
 		}
 	}
+
+	/**
+	 * Returns a new parser for <code>grammarFile</code>, which shares the
+	 * grammar loaded by {@link #getParser(String)} but can be used
+	 * concurrently with any other instance.
+	 */
+	public Parser newParser(String grammarFile) {
+		Parser parser = getParser(grammarFile);
+		synchronized(parser) {
+			return parser.newInstance();
+		}
+	}
 }
@@ -0,0 +1,567 @@
+package l2f.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import edu.berkeley.nlp.ling.Tree;
+
+import l2f.config.Config;
+import l2f.interpretation.AnalyzedQuestionCache;
+import l2f.nlp.TokenizerFactory.TokenizerType;
+import l2f.utils.ResourceLoadException;
+
+/**
+ * Greedy averaged perceptron part-of-speech tagger (Collins, 2002).
+ *
+ * Tokens are tagged from left to right, from features of the token, of its
+ * neighbours and of the two previous tags. Frequent words that almost
+ * always have the same tag are tagged from a dictionary instead.
+ *
+ * The tagger is trained on the parses of the training questions, so that
+ * its tags follow the conventions of the parser's grammar and can be used
+ * to constrain the parser (see <code>Parser.getBestParse(List, List)</code>).
+ * The grammar tags the final question mark either <code>?</code> or
+ * <code>.</code>, depending on the rest of the parse rather than on the
+ * words, so the tagger learns both as <code>?</code>, the tag of most of
+ * the training questions.
+ * Since it depends on the grammar, the tokenizer and the training
+ * questions, it is saved with a fingerprint of the three and retrained when
+ * any of them changes. Once trained, the tagger can be used concurrently.
+ *
+ * The tagger is not used unless <code>nlp/tagger/modelFile</code> is set in
+ * the configuration file. Build it beforehand with {@link #main}, since
+ * otherwise the first <code>QuestionAnalyzer</code> trains it, parsing all
+ * the training questions.
+ */
+public class PosTagger {
+
+    private static final int MAGIC = 0x504F5331; // "POS1"
+    private static final int VERSION = 2;
+    private static final int ITERATIONS = 5;
+    /**
+     * Words seen at least this many times, with the same tag at least this
+     * often, are tagged from the dictionary.
+     */
+    private static final int DICTIONARY_MIN_COUNT = 20;
+    private static final double DICTIONARY_MIN_RATIO = 0.97;
+    private static final String START = "-START-";
+    private static final String START2 = "-START2-";
+    private static final String END = "-END-";
+    private static final String END2 = "-END2-";
+    private static final String QUESTION_MARK = "?";
+
+    /**
+     * Weights of a feature: the tags with non-zero weight, and their weights.
+     */
+    private static class Weights {
+
+        final short[] tags;
+        final float[] values;
+
+        Weights(short[] tags, float[] values) {
+            this.tags = tags;
+            this.values = values;
+        }
+    }
+    private final String[] tags;
+    private final Map<String, String> dictionary;
+    private final Map<String, Weights> weights;
+
+    private PosTagger(String[] tags, Map<String, String> dictionary, Map<String, Weights> weights) {
+        this.tags = tags;
+        this.dictionary = dictionary;
+        this.weights = weights;
+    }
+
+    /**
+     * Returns a part-of-speech tag for each token.
+     */
+    public List<String> tag(List<String> tokens) {
+        return tag(tokens, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Returns a part-of-speech tag for each token, or null if the score of
+     * the best tag of some token does not exceed the score of the second
+     * best by at least <code>minMargin</code>.
+     */
+    public List<String> tag(List<String> tokens, double minMargin) {
+        List<String> result = new ArrayList<String>(tokens.size());
+        double[] scores = new double[tags.length];
+        List<String> features = new ArrayList<String>();
+        String prev = START;
+        String prev2 = START2;
+        for (int i = 0; i < tokens.size(); i++) {
+            String tag = dictionary.get(tokens.get(i));
+            if (tag == null) {
+                features(tokens, i, prev, prev2, features);
+                Arrays.fill(scores, 0);
+                for (String feature : features) {
+                    Weights w = weights.get(feature);
+                    if (w != null) {
+                        for (int k = 0; k < w.tags.length; k++) {
+                            scores[w.tags[k]] += w.values[k];
+                        }
+                    }
+                }
+                int best = argmax(scores);
+                if (margin(scores, best) < minMargin) {
+                    return null;
+                }
+                tag = tags[best];
+            }
+            result.add(tag);
+            prev2 = prev;
+            prev = tag;
+        }
+        return result;
+    }
+
+    private static double margin(double[] scores, int best) {
+        double second = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < scores.length; i++) {
+            if (i != best && scores[i] > second) {
+                second = scores[i];
+            }
+        }
+        return scores[best] - second;
+    }
+
+    public int size() {
+        return weights.size();
+    }
+
+    private static int argmax(double[] scores) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fills <code>features</code> with the features of token <code>i</code>,
+     * given the tags of the two previous tokens.
+     */
+    private static void features(List<String> tokens, int i, String prev, String prev2, List<String> features) {
+        features.clear();
+        String word = tokens.get(i);
+        String normalized = normalize(word);
+        String prevWord = i > 0 ? normalize(tokens.get(i - 1)) : START;
+        String prevWord2 = i > 1 ? normalize(tokens.get(i - 2)) : START2;
+        String nextWord = i + 1 < tokens.size() ? normalize(tokens.get(i + 1)) : END;
+        String nextWord2 = i + 2 < tokens.size() ? normalize(tokens.get(i + 2)) : END2;
+        features.add("bias");
+        features.add("w " + normalized);
+        features.add("s " + suffix(normalized));
+        features.add("p " + normalized.charAt(0));
+        features.add("x " + shape(word) + (i == 0 ? " first" : ""));
+        features.add("t-1 " + prev);
+        features.add("t-2 " + prev2);
+        features.add("t-1 t-2 " + prev + " " + prev2);
+        features.add("t-1 w " + prev + " " + normalized);
+        features.add("w-1 " + prevWord);
+        features.add("s-1 " + suffix(prevWord));
+        features.add("w-2 " + prevWord2);
+        features.add("w+1 " + nextWord);
+        features.add("s+1 " + suffix(nextWord));
+        features.add("w+2 " + nextWord2);
+        features.add("s2 " + (normalized.length() > 2 ? normalized.substring(normalized.length() - 2) : normalized));
+        features.add("s1 " + normalized.charAt(normalized.length() - 1));
+        features.add("p3 " + (normalized.length() > 3 ? normalized.substring(0, 3) : normalized));
+        features.add("x-1 x+1 " + (i > 0 ? shape(tokens.get(i - 1)) : START) + " " + shape(word) + " " + (i + 1 < tokens.size() ? shape(tokens.get(i + 1)) : END));
+        features.add("t-1 w+1 " + prev + " " + nextWord);
+    }
+
+    /**
+     * Lower cases the word, and replaces numbers and hyphenated words by
+     * their class.
+     */
+    private static String normalize(String word) {
+        if (word.length() == 0) {
+            return "!EMPTY";
+        }
+        if (word.indexOf('-') > 0 && word.charAt(0) != '-') {
+            return "!HYPHEN";
+        }
+        if (word.length() == 4 && isDigits(word)) {
+            return "!YEAR";
+        }
+        if (Character.isDigit(word.charAt(0))) {
+            return "!DIGITS";
+        }
+        return word.toLowerCase();
+    }
+
+    private static boolean isDigits(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (!Character.isDigit(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String suffix(String word) {
+        return word.length() > 3 ? word.substring(word.length() - 3) : word;
+    }
+
+    /**
+     * Returns the case of the word: capitalized, upper, lower or other.
+     */
+    private static String shape(String word) {
+        boolean upper = false;
+        boolean lower = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            upper |= Character.isUpperCase(c);
+            lower |= Character.isLowerCase(c);
+        }
+        if (upper && lower) {
+            return Character.isUpperCase(word.charAt(0)) ? "Xx" : "xX";
+        }
+        return upper ? "X" : lower ? "x" : "-";
+    }
+
+    /**
+     * Weights of a feature being trained, with the totals used to average
+     * them.
+     */
+    private static class TrainingWeights {
+
+        final double[] values;
+        final double[] totals;
+        final int[] stamps;
+
+        TrainingWeights(int tags) {
+            values = new double[tags];
+            totals = new double[tags];
+            stamps = new int[tags];
+        }
+
+        void update(int tag, double delta, int instance) {
+            totals[tag] += (instance - stamps[tag]) * values[tag];
+            stamps[tag] = instance;
+            values[tag] += delta;
+        }
+    }
+
+    /**
+     * Trains a tagger from tagged sentences.
+     *
+     * @param sentences tokens of each sentence
+     * @param sentenceTags tags of each sentence
+     * @param iterations number of passes over the sentences
+     */
+    public static PosTagger train(List<List<String>> sentences, List<List<String>> sentenceTags, int iterations) {
+        Map<String, Integer> tagIndex = new HashMap<String, Integer>();
+        List<String> tagList = new ArrayList<String>();
+        Map<String, Map<String, Integer>> wordTags = new HashMap<String, Map<String, Integer>>();
+        for (int s = 0; s < sentences.size(); s++) {
+            for (int i = 0; i < sentences.get(s).size(); i++) {
+                String tag = sentenceTags.get(s).get(i);
+                if (!tagIndex.containsKey(tag)) {
+                    tagIndex.put(tag, tagList.size());
+                    tagList.add(tag);
+                }
+                Map<String, Integer> counts = wordTags.get(sentences.get(s).get(i));
+                if (counts == null) {
+                    counts = new HashMap<String, Integer>();
+                    wordTags.put(sentences.get(s).get(i), counts);
+                }
+                Integer count = counts.get(tag);
+                counts.put(tag, count == null ? 1 : count + 1);
+            }
+        }
+        Map<String, String> dictionary = new HashMap<String, String>();
+        for (Map.Entry<String, Map<String, Integer>> entry : wordTags.entrySet()) {
+            int total = 0;
+            int best = 0;
+            String bestTag = null;
+            for (Map.Entry<String, Integer> count : entry.getValue().entrySet()) {
+                total += count.getValue();
+                if (count.getValue() > best) {
+                    best = count.getValue();
+                    bestTag = count.getKey();
+                }
+            }
+            if (total >= DICTIONARY_MIN_COUNT && best >= DICTIONARY_MIN_RATIO * total) {
+                dictionary.put(entry.getKey(), bestTag);
+            }
+        }
+
+        int numTags = tagList.size();
+        Map<String, TrainingWeights> training = new HashMap<String, TrainingWeights>();
+        List<Integer> order = new ArrayList<Integer>();
+        for (int s = 0; s < sentences.size(); s++) {
+            order.add(s);
+        }
+        Random random = new Random(1);
+        double[] scores = new double[numTags];
+        List<String> features = new ArrayList<String>();
+        int instance = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Collections.shuffle(order, random);
+            for (int s : order) {
+                List<String> tokens = sentences.get(s);
+                String prev = START;
+                String prev2 = START2;
+                for (int i = 0; i < tokens.size(); i++) {
+                    String truth = sentenceTags.get(s).get(i);
+                    String guess = dictionary.get(tokens.get(i));
+                    if (guess == null) {
+                        features(tokens, i, prev, prev2, features);
+                        Arrays.fill(scores, 0);
+                        for (String feature : features) {
+                            TrainingWeights w = training.get(feature);
+                            if (w != null) {
+                                for (int k = 0; k < numTags; k++) {
+                                    scores[k] += w.values[k];
+                                }
+                            }
+                        }
+                        guess = tagList.get(argmax(scores));
+                        instance++;
+                        if (!guess.equals(truth)) {
+                            int truthIndex = tagIndex.get(truth);
+                            int guessIndex = tagIndex.get(guess);
+                            for (String feature : features) {
+                                TrainingWeights w = training.get(feature);
+                                if (w == null) {
+                                    w = new TrainingWeights(numTags);
+                                    training.put(feature, w);
+                                }
+                                w.update(truthIndex, 1, instance);
+                                w.update(guessIndex, -1, instance);
+                            }
+                        }
+                    }
+                    // the previous tags are the guesses, as when tagging
+                    prev2 = prev;
+                    prev = guess;
+                }
+            }
+        }
+
+        // averages the weights, keeping the non-zero ones
+        Map<String, Weights> weights = new HashMap<String, Weights>();
+        short[] nonZeroTags = new short[numTags];
+        float[] nonZeroValues = new float[numTags];
+        for (Map.Entry<String, TrainingWeights> entry : training.entrySet()) {
+            TrainingWeights w = entry.getValue();
+            int n = 0;
+            for (int k = 0; k < numTags; k++) {
+                double total = w.totals[k] + (instance - w.stamps[k]) * w.values[k];
+                float average = (float) (total / instance);
+                if (average != 0) {
+                    nonZeroTags[n] = (short) k;
+                    nonZeroValues[n] = average;
+                    n++;
+                }
+            }
+            if (n > 0) {
+                weights.put(entry.getKey(), new Weights(Arrays.copyOf(nonZeroTags, n), Arrays.copyOf(nonZeroValues, n)));
+            }
+        }
+        return new PosTagger(tagList.toArray(new String[numTags]), dictionary, weights);
+    }
+
+    /**
+     * Trains a tagger from the parses of the questions in the files of
+     * <code>trainDir</code> (one question per line, after its category).
+     */
+    public static PosTagger build(String grammarFile, String trainDir, TokenizerType tokenizerType) throws IOException {
+        Parser parser = ParserFactory.INSTANCE.newParser(grammarFile);
+        Tokenizer tokenizer = TokenizerFactory.newTokenizer(tokenizerType);
+        List<List<String>> sentences = new ArrayList<List<String>>();
+        List<List<String>> sentenceTags = new ArrayList<List<String>>();
+        for (File file : trainingFiles(trainDir)) {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int questionStart = line.indexOf(' ');
+                    if (questionStart < 0) {
+                        continue;
+                    }
+                    List<String> tokens = tokenizer.tokenize(line.substring(questionStart + 1).trim());
+                    if (tokens.isEmpty()) {
+                        continue;
+                    }
+                    Tree<String> parse = parser.getBestParse(tokens);
+                    List<String> tags = parse.getPreTerminalYield();
+                    // skips the questions the parser fails on
+                    if (tags.size() == tokens.size()) {
+                        int last = tags.size() - 1;
+                        if (tokens.get(last).equals(QUESTION_MARK)) {
+                            tags.set(last, QUESTION_MARK);
+                        }
+                        sentences.add(tokens);
+                        sentenceTags.add(tags);
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        }
+        return train(sentences, sentenceTags, ITERATIONS);
+    }
+
+    private static List<File> trainingFiles(String trainDir) {
+        List<File> files = new ArrayList<File>();
+        File[] children = new File(trainDir).listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isFile() && !child.getName().startsWith(".")) {
+                    files.add(child);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Fingerprint of the grammar, the training questions and the tokenizer.
+     */
+    private static long fingerprint(String grammarFile, String trainDir, TokenizerType tokenizerType) {
+        List<String> files = new ArrayList<String>();
+        files.add(grammarFile);
+        for (File file : trainingFiles(trainDir)) {
+            files.add(file.getPath());
+        }
+        return AnalyzedQuestionCache.fingerprint(files.toArray(new String[files.size()]),
+                tokenizerType.name(), String.valueOf(ITERATIONS));
+    }
+
+    /**
+     * Loads the tagger from <code>filename</code>, or trains it (and saves
+     * it to <code>filename</code>) if it does not exist or was trained from
+     * a different grammar, tokenizer or training questions.
+     */
+    public static PosTagger load(String filename, String grammarFile, String trainDir, TokenizerType tokenizerType) {
+        long fingerprint = fingerprint(grammarFile, trainDir, tokenizerType);
+        File file = new File(filename);
+        try {
+            if (file.exists()) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == fingerprint) {
+                        return read(in);
+                    }
+                } finally {
+                    in.close();
+                }
+                System.err.println("Retraining stale POS tagger: " + filename + ".");
+            } else {
+                System.err.println("Training POS tagger from the parses of the training questions: " + filename + ".");
+            }
+            PosTagger tagger = build(grammarFile, trainDir, tokenizerType);
+            tagger.save(file, fingerprint);
+            return tagger;
+        } catch (IOException ioe) {
+            throw new ResourceLoadException("Couldn't load PosTagger.", ioe);
+        }
+    }
+
+    private static PosTagger read(DataInputStream in) throws IOException {
+        String[] tags = new String[in.readInt()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = in.readUTF();
+        }
+        int entries = in.readInt();
+        Map<String, String> dictionary = new HashMap<String, String>(2 * entries);
+        for (int i = 0; i < entries; i++) {
+            String word = in.readUTF();
+            dictionary.put(word, tags[in.readShort()]);
+        }
+        int features = in.readInt();
+        Map<String, Weights> weights = new HashMap<String, Weights>(2 * features);
+        for (int i = 0; i < features; i++) {
+            String feature = in.readUTF();
+            int n = in.readShort();
+            short[] featureTags = new short[n];
+            float[] values = new float[n];
+            for (int k = 0; k < n; k++) {
+                featureTags[k] = in.readShort();
+                values[k] = in.readFloat();
+            }
+            weights.put(feature, new Weights(featureTags, values));
+        }
+        return new PosTagger(tags, dictionary, weights);
+    }
+
+    private void save(File file, long fingerprint) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        List<String> tagList = Arrays.asList(tags);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(tags.length);
+            for (String tag : tags) {
+                out.writeUTF(tag);
+            }
+            out.writeInt(dictionary.size());
+            for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeShort(tagList.indexOf(entry.getValue()));
+            }
+            out.writeInt(weights.size());
+            for (Map.Entry<String, Weights> entry : weights.entrySet()) {
+                out.writeUTF(entry.getKey());
+                Weights w = entry.getValue();
+                out.writeShort(w.tags.length);
+                for (int k = 0; k < w.tags.length; k++) {
+                    out.writeShort(w.tags[k]);
+                    out.writeFloat(w.values[k]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Trains the POS tagger for the grammar, tokenizer and training
+     * questions set in the configuration file (config/config_en.xml, by
+     * default), and saves it to the given model file, or else to the one
+     * set in the configuration file. Usage:
+     * <code>PosTagger [configFile [modelFile]]</code>, e.g.
+     * <code>PosTagger config/config_en.xml resources/parser/english/questionbank_modified.tagger</code>.
+     */
+    public static void main(String[] args) throws IOException {
+        Config.parseConfig(args.length > 0 ? args[0] : "config/config_en.xml");
+        String modelFile = args.length > 1 ? args[1] : Config.nlp_taggerModelFile;
+        if (modelFile.length() == 0) {
+            throw new IllegalArgumentException("No tagger model file given or set in the configuration file.");
+        }
+        TokenizerType tokenizerType = TokenizerType.valueOf(Config.questionAnalysis_tokenizerType);
+        long start = System.currentTimeMillis();
+        PosTagger tagger = build(Config.questionAnalysis_parserGrammarFile, Config.classification_trainDir, tokenizerType);
+        tagger.save(new File(modelFile), fingerprint(Config.questionAnalysis_parserGrammarFile,
+                Config.classification_trainDir, tokenizerType));
+        System.out.println("Trained " + tagger.size() + " features in "
+                + (System.currentTimeMillis() - start) + " ms: " + modelFile);
+    }
+}
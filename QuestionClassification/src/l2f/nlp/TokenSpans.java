@@ -0,0 +1,161 @@
+package l2f.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.berkeley.nlp.io.Americanize;
+
+/**
+ * Reusable buffer of the tokens of a text, as offsets into it.
+ *
+ * Filled by <code>PTBTokenizer.tokenize(CharSequence, TokenSpans)</code>
+ * without creating a string per token. The text of a token is the span
+ * <code>[start(i), end(i))</code> of the tokenized text; when the
+ * tokenizer rewrites it (PTB escapes such as <code>-LRB-</code>, American
+ * spellings, ...) the token, as <code>tokenize(String)</code> would return
+ * it, is given by <code>word(i)</code>. Spans can be hashed and compared
+ * without creating strings. The buffer is not thread-safe; use one per
+ * thread and clear it (or let the tokenizer clear it) before reuse.
+ */
+public class TokenSpans {
+
+    private CharSequence text;
+    private int size;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    /**
+     * Replacement of each token, or null if the token is its text (or its
+     * text in American spelling, see <code>americanize</code>).
+     */
+    private String[] replacements = new String[32];
+    private boolean[] americanize = new boolean[32];
+
+    /**
+     * Empties the buffer, to hold the tokens of <code>text</code>.
+     */
+    public void clear(CharSequence text) {
+        Arrays.fill(replacements, 0, size, null);
+        this.text = text;
+        this.size = 0;
+    }
+
+    void add(int start, int end, String replacement, boolean americanized) {
+        if (size == starts.length) {
+            int capacity = 2 * size;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            replacements = Arrays.copyOf(replacements, capacity);
+            americanize = Arrays.copyOf(americanize, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        replacements[size] = replacement;
+        americanize[size] = americanized;
+        size++;
+    }
+
+    /**
+     * Returns the tokenized text.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Returns the number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the offset of the first character of token <code>i</code>.
+     */
+    public int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     * Returns the offset after the last character of token <code>i</code>.
+     */
+    public int end(int i) {
+        return ends[i];
+    }
+
+    public int length(int i) {
+        return ends[i] - starts[i];
+    }
+
+    /**
+     * Returns whether token <code>i</code> differs from its text (see
+     * <code>word</code>). For words, this checks their American spelling,
+     * creating them.
+     */
+    public boolean isRewritten(int i) {
+        if (replacements[i] != null) {
+            return true;
+        }
+        return americanize[i] && !textEquals(i, word(i), false);
+    }
+
+    /**
+     * Returns the hash code of the text of token <code>i</code>, as
+     * <code>String.hashCode</code> computes it.
+     */
+    public int hashCode(int i) {
+        int hash = 0;
+        for (int k = starts[i]; k < ends[i]; k++) {
+            hash = 31 * hash + text.charAt(k);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns whether the text of token <code>i</code> is <code>s</code>.
+     */
+    public boolean textEquals(int i, CharSequence s, boolean ignoreCase) {
+        if (s.length() != length(i)) {
+            return false;
+        }
+        for (int k = 0; k < s.length(); k++) {
+            char a = text.charAt(starts[i] + k);
+            char b = s.charAt(k);
+            if (a != b && (!ignoreCase || Character.toLowerCase(a) != Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the text of token <code>i</code>.
+     */
+    public String text(int i) {
+        return text.subSequence(starts[i], ends[i]).toString();
+    }
+
+    /**
+     * Returns token <code>i</code> as <code>PTBTokenizer.tokenize</code>
+     * returns it.
+     */
+    public String word(int i) {
+        if (replacements[i] != null) {
+            return replacements[i];
+        }
+        String word = text(i);
+        return americanize[i] ? Americanize.americanize(word) : word;
+    }
+
+    /**
+     * Returns all the tokens, as <code>PTBTokenizer.tokenize</code>
+     * returns them.
+     */
+    public List<String> words() {
+        List<String> words = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            words.add(word(i));
+        }
+        return words;
+    }
+}
@@ -15,7 +15,8 @@ public class TokenizerFactory {
 
     public enum TokenizerType {
         PTB,
-        LINGPIPE;
+        LINGPIPE,
+        FAST;
     }
 
     public static Tokenizer newTokenizer(TokenizerType type) {
@@ -38,6 +39,8 @@ public class TokenizerFactory {
                         return tokens;
                     }
                 };
+            case FAST:
+                return new FastTokenizer();
             default:
                 throw new IllegalArgumentException("Unrecognized tokenizer type: '" + type + "'.");
         }
@@ -0,0 +1,351 @@
+package l2f.nlp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import edu.berkeley.nlp.ling.Tree;
+
+/**
+ * Compiled pattern over parse trees, matched by walking the
+ * <code>Tree</code> instead of a regular expression over its string form.
+ *
+ * Patterns are written like the bracketed trees they match, in the spirit
+ * of Tregex:
+ * <ul>
+ * <li><code>(L c1 c2 ...)</code> matches a node whose label matches
+ * <code>L</code> and whose children match <code>c1 c2 ...</code>, in order
+ * and with none left over; a bare <code>L</code> matches a leaf.</li>
+ * <li>Labels are regular expressions matched against the whole label,
+ * ignoring case; <code>__</code> matches any label.</li>
+ * <li><code>?</code>, <code>*</code> or <code>+</code> right after the
+ * <code>)</code> of a child repeats it, as in regular expressions.</li>
+ * <li><code>...</code> as the last child matches any remaining
+ * children.</li>
+ * <li><code>A .. B</code> matches <code>A</code> if some node after
+ * <code>A</code> (in preorder, outside <code>A</code>) matches
+ * <code>B</code>; the first such node is used.</li>
+ * <li><code>@</code> before a child captures the nodes it matches.</li>
+ * </ul>
+ * For example, <code>(ROOT (SBARQ (WHNP (WP who)) (SQ (VB[ZD] is|'s|was)
+ * (NP @(NNP?S? __)+)) ([?.] [?.])?))</code> matches "Who is Duke
+ * Ellington ?" and captures the <code>NNP</code> nodes.
+ */
+public class TreePattern {
+
+    private static final String ANY = "__";
+    private static final String REST = "...";
+    private static final String FOLLOWED_BY = "..";
+    private static final Pattern LITERAL = Pattern.compile("[\\w'-]+");
+    private final String pattern;
+    private final Node root;
+
+    /**
+     * Pattern for a node.
+     */
+    private static class Node {
+
+        /**
+         * Label to compare ignoring case, or null if <code>regex</code> is
+         * used.
+         */
+        String literal;
+        Pattern regex;
+        boolean leaf;
+        List<Item> children = new ArrayList<Item>();
+        boolean anyRest;
+
+        boolean matchesLabel(String label) {
+            if (literal != null) {
+                return literal.equalsIgnoreCase(label);
+            }
+            return regex == null || regex.matcher(label).matches();
+        }
+    }
+
+    /**
+     * A node pattern in a list of children, with its repetitions, capture
+     * and following node.
+     */
+    private static class Item {
+
+        Node node;
+        int min = 1;
+        int max = 1;
+        boolean capture;
+        Node following;
+    }
+
+    private TreePattern(String pattern, Node root) {
+        this.pattern = pattern;
+        this.root = root;
+    }
+
+    /**
+     * Compiles <code>pattern</code>.
+     *
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public static TreePattern compile(String pattern) {
+        Parser parser = new Parser(pattern);
+        Node root = parser.node();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position)
+                    + "' in tree pattern: " + pattern);
+        }
+        return new TreePattern(pattern, root);
+    }
+
+    /**
+     * Matches the pattern against the root of <code>tree</code>.
+     *
+     * @return the captured nodes, in the order they were matched, or null
+     * if the tree does not match
+     */
+    public List<Tree<String>> match(Tree<String> tree) {
+        List<Tree<String>> captures = new ArrayList<Tree<String>>();
+        return matches(root, tree, tree, captures) ? captures : null;
+    }
+
+    /**
+     * Returns the words under <code>nodes</code>, separated by spaces.
+     */
+    public static String yield(List<Tree<String>> nodes) {
+        StringBuilder sb = new StringBuilder();
+        for (Tree<String> node : nodes) {
+            for (Tree<String> terminal : node.getTerminals()) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(terminal.getLabel());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean matches(Node node, Tree<String> tree, Tree<String> root, List<Tree<String>> captures) {
+        if (!node.matchesLabel(tree.getLabel())) {
+            return false;
+        }
+        if (node.leaf) {
+            return tree.isLeaf();
+        }
+        int captured = captures.size();
+        if (matchesChildren(node, 0, tree.getChildren(), 0, root, captures)) {
+            return true;
+        }
+        truncate(captures, captured);
+        return false;
+    }
+
+    /**
+     * Matches items <code>item</code>... of <code>node</code> against
+     * <code>children</code> from <code>child</code> on, trying the longest
+     * repetitions first.
+     */
+    private static boolean matchesChildren(Node node, int item, List<Tree<String>> children, int child,
+            Tree<String> root, List<Tree<String>> captures) {
+        if (item == node.children.size()) {
+            return node.anyRest || child == children.size();
+        }
+        Item it = node.children.get(item);
+        int captured = captures.size();
+        int count = 0;
+        int[] marks = new int[Math.min(it.max, children.size() - child) + 1];
+        marks[0] = captured;
+        while (count < it.max && child + count < children.size()
+                && matchesItem(it, children.get(child + count), root, captures)) {
+            count++;
+            marks[count] = captures.size();
+        }
+        for (; count >= it.min; count--) {
+            truncate(captures, marks[count]);
+            if (matchesChildren(node, item + 1, children, child + count, root, captures)) {
+                return true;
+            }
+        }
+        truncate(captures, captured);
+        return false;
+    }
+
+    private static boolean matchesItem(Item item, Tree<String> tree, Tree<String> root, List<Tree<String>> captures) {
+        int captured = captures.size();
+        if (!matches(item.node, tree, root, captures)) {
+            return false;
+        }
+        if (item.capture) {
+            captures.add(captured, tree);
+        }
+        if (item.following != null && !matchesFollowing(item.following, tree, root, captures)) {
+            truncate(captures, captured);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Matches <code>node</code> against the first node after
+     * <code>preceding</code> in preorder, outside it, that it matches.
+     */
+    private static boolean matchesFollowing(Node node, Tree<String> preceding, Tree<String> root,
+            List<Tree<String>> captures) {
+        List<Tree<String>> stack = new ArrayList<Tree<String>>();
+        stack.add(root);
+        boolean passed = false;
+        while (!stack.isEmpty()) {
+            Tree<String> tree = stack.remove(stack.size() - 1);
+            if (tree == preceding) {
+                passed = true;
+                continue;
+            }
+            if (passed && matches(node, tree, root, captures)) {
+                return true;
+            }
+            List<Tree<String>> children = tree.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+            }
+        }
+        return false;
+    }
+
+    private static void truncate(List<Tree<String>> captures, int size) {
+        while (captures.size() > size) {
+            captures.remove(captures.size() - 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+    /**
+     * Recursive descent parser of the pattern language.
+     */
+    private static class Parser {
+
+        private final String pattern;
+        private final List<String> tokens = new ArrayList<String>();
+        private int position;
+
+        Parser(String pattern) {
+            this.pattern = pattern;
+            int i = 0;
+            while (i < pattern.length()) {
+                char c = pattern.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(') {
+                    tokens.add("(");
+                    i++;
+                } else if (c == ')') {
+                    tokens.add(")");
+                    i++;
+                    if (i < pattern.length() && "?*+".indexOf(pattern.charAt(i)) >= 0) {
+                        tokens.add(String.valueOf(pattern.charAt(i++)));
+                    }
+                } else {
+                    int start = i;
+                    if (c == '@') {
+                        tokens.add("@");
+                        start = ++i;
+                    }
+                    while (i < pattern.length() && !Character.isWhitespace(pattern.charAt(i))
+                            && pattern.charAt(i) != '(' && pattern.charAt(i) != ')') {
+                        i++;
+                    }
+                    if (i > start) {
+                        tokens.add(pattern.substring(start, i));
+                    }
+                }
+            }
+        }
+
+        private String peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private String next() {
+            String token = peek();
+            if (token == null) {
+                throw new IllegalArgumentException("Unexpected end of tree pattern: " + pattern);
+            }
+            position++;
+            return token;
+        }
+
+        private Node node() {
+            String token = next();
+            if (token.equals("(")) {
+                Node node = label(next());
+                while (true) {
+                    token = peek();
+                    if (token == null) {
+                        throw new IllegalArgumentException("Missing ')' in tree pattern: " + pattern);
+                    }
+                    if (token.equals(")")) {
+                        position++;
+                        return node;
+                    }
+                    if (token.equals(REST)) {
+                        position++;
+                        node.anyRest = true;
+                        if (!")".equals(peek())) {
+                            throw new IllegalArgumentException("'" + REST + "' must be the last child in tree pattern: " + pattern);
+                        }
+                    } else {
+                        node.children.add(item());
+                    }
+                }
+            }
+            Node node = label(token);
+            node.leaf = true;
+            return node;
+        }
+
+        private Item item() {
+            Item item = new Item();
+            if ("@".equals(peek())) {
+                position++;
+                item.capture = true;
+            }
+            item.node = node();
+            String token = peek();
+            if ("?".equals(token)) {
+                item.min = 0;
+                position++;
+            } else if ("*".equals(token)) {
+                item.min = 0;
+                item.max = Integer.MAX_VALUE;
+                position++;
+            } else if ("+".equals(token)) {
+                item.max = Integer.MAX_VALUE;
+                position++;
+            }
+            if (FOLLOWED_BY.equals(peek())) {
+                position++;
+                item.following = node();
+            }
+            return item;
+        }
+
+        private Node label(String token) {
+            if (token.equals("(") || token.equals(")") || token.equals("@")
+                    || token.equals(REST) || token.equals(FOLLOWED_BY)) {
+                throw new IllegalArgumentException("Expected a label instead of '" + token
+                        + "' in tree pattern: " + pattern);
+            }
+            Node node = new Node();
+            if (token.equals(ANY)) {
+                return node;
+            }
+            if (LITERAL.matcher(token).matches()) {
+                node.literal = token;
+            } else {
+                node.regex = Pattern.compile(token, Pattern.CASE_INSENSITIVE);
+            }
+            return node;
+        }
+    }
+}
@@ -34,12 +34,21 @@ import net.didion.jwnl.dictionary.Dictionary;
 /**
  * This class provides a <code>Lexicon</code> implementation, using
  * Princeton's WordNet -- a lexical database.
+ * 
+ * JWNL's file dictionary seeks and caches without any locking, so every
+ * public lookup method is synchronized to allow concurrent callers.
  *  
  * @author Jo�o
  */
 public class WordNet implements Lexicon {
 
     public final Dictionary dictionary;
+    /**
+     * Precomputed hypernym closure of <code>indexedMap</code>, or null if
+     * no hypernym index is configured.
+     */
+    private HypernymIndex hypernymIndex;
+    private LexiconMap indexedMap;
 
     public WordNet() {
         try {
@@ -95,7 +104,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public List<String> getSynonyms(String word) {
+    public synchronized List<String> getSynonyms(String word) {
         List<String> synonyms = new ArrayList<String>();
         try {
             if (word != null && !word.equalsIgnoreCase("")) {
@@ -117,7 +126,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public List<String> getSynonyms(String word, POS pos) {
+    public synchronized List<String> getSynonyms(String word, POS pos) {
         List<String> synonyms = new ArrayList<String>();
         try {
             IndexWord indexWord = dictionary.lookupIndexWord(pos, word);
@@ -135,7 +144,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public Set<String> getCommonHypernyms(String[] words) {
+    public synchronized Set<String> getCommonHypernyms(String[] words) {
         Set<String> overlap = new HashSet<String>();
         boolean isFirst = true;
         for (String word : words) {
@@ -171,7 +180,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public List<String> getFullHyponym(String word, int maxDepth) {
+    public synchronized List<String> getFullHyponym(String word, int maxDepth) {
         List<String> hyponyms = new ArrayList<String>();
         Map<Long, Integer> hyponymsDepth = new HashMap<Long, Integer>();
         Synset synset = getSynset(word); // 1st sense
@@ -210,7 +219,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public boolean hasWord(String word) {
+    public synchronized boolean hasWord(String word) {
         IndexWord iw = null;
         try {
             iw = dictionary.lookupIndexWord(POS.NOUN, word);
@@ -228,7 +237,7 @@ public class WordNet implements Lexicon {
     }
 
     @Override
-    public String getGloss(String word) {
+    public synchronized String getGloss(String word) {
         Synset synset = getSynset(word); // 1st sense
         if (synset != null) {
             return synset.getGloss();
@@ -242,8 +251,17 @@ public class WordNet implements Lexicon {
         return "WordNet 3.0";
     }
 
+    /**
+     * Uses the hypernym index of <code>map</code>, if one is configured
+     * (see <code>HypernymIndex</code>), or walks the hypernym tree of the
+     * word otherwise.
+     */
     @Override
-    public Pair<Long, String> intersectMap(String word, POS pos, LexiconMap map, boolean allsenses) {
+    public synchronized Pair<Long, String> intersectMap(String word, POS pos, LexiconMap map, boolean allsenses) {
+        HypernymIndex index = getHypernymIndex(map);
+        if (index != null) {
+            return intersectMapIndexed(word, pos, index, allsenses);
+        }
         if (allsenses) {
             return intersectMapAllSenses(word, pos, map);
         } else {
@@ -252,7 +270,48 @@ public class WordNet implements Lexicon {
     }
 
 
-    public Pair<Long, String> intersectMapAllSenses(String word, POS pos, LexiconMap map) {
+    private HypernymIndex getHypernymIndex(LexiconMap map) {
+        if (Config.nlp_wordnetHypernymIndex.length() == 0) {
+            return null;
+        }
+        if (map != indexedMap) {
+            hypernymIndex = HypernymIndex.load(Config.nlp_wordnetHypernymIndex,
+                    HypernymIndex.getDictionaryPath(Config.nlp_wordnetProperties), map);
+            indexedMap = map;
+        }
+        return hypernymIndex;
+    }
+
+    /**
+     * Same as {@link #intersectMap1stSense} and {@link #intersectMapAllSenses},
+     * but looks up the precomputed hypernym closure of each sense instead of
+     * loading its hypernyms.
+     */
+    private Pair<Long, String> intersectMapIndexed(String word, POS pos, HypernymIndex index, boolean allsenses) {
+        IndexWord indexWord = null;
+        try {
+            indexWord = dictionary.lookupIndexWord(pos, word);
+        } catch (JWNLException e) {
+            e.printStackTrace();
+        }
+        if (indexWord == null || indexWord.getSenseCount() == 0) {
+            System.err.println("Unable to find the word '"
+                    + word + "/" + pos + "' in WordNet.");
+            return null;
+        }
+        long[] offsets = indexWord.getSynsetOffsets();
+        int senses = allsenses ? offsets.length : 1;
+        for (int i = 0; i < senses; i++) {
+            HypernymIndex.Hit hit = index.lookup(pos, offsets[i]);
+            if (hit != null) {
+                return new Pair<Long, String>(hit.offset, hit.target + ":::" + (i + 1)
+                        + (hit.hops == 0 ? "sense[" : "sense.hypernyms[") + hit.words + "]");
+            }
+        }
+        return null;
+    }
+
+    public synchronized Pair<Long, String> intersectMapAllSenses(String word, POS pos, LexiconMap map) {
         Synset[] headSynsets = getSynsets(word, pos);
         if (headSynsets == null) {
             System.err.println("Unable to find the word '"
@@ -303,7 +362,7 @@ public class WordNet implements Lexicon {
         return null;
     }
 
-    public Pair<Long, String> intersectMap1stSense(String word, POS pos, LexiconMap map) {
+    public synchronized Pair<Long, String> intersectMap1stSense(String word, POS pos, LexiconMap map) {
         Synset headSynset = getSynset(word, pos); // 1st sense
         if (headSynset == null) {
             System.err.println("Unable to find the word '"
@@ -0,0 +1,129 @@
+package l2f.nlp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * Synsets of a WordNet data file (data.noun, data.verb, ...), read
+ * straight from the file, with their words, hypernyms, hyponyms and
+ * (optionally) glosses. Synsets are numbered in file order, which is also
+ * the order of their offsets.
+ */
+class WordNetDataFile {
+
+    static final String HYPERNYM = "@";
+    static final String HYPONYM = "~";
+
+    final int size;
+    final long[] offsets;
+    /**
+     * Words of each synset, as read by JWNL (with underscores and any
+     * adjective marker, such as "(p)").
+     */
+    final String[][] words;
+    final int[][] hypernyms;
+    final int[][] hyponyms;
+    /**
+     * Glosses of each synset, or null if they were not read.
+     */
+    final String[] glosses;
+
+    WordNetDataFile(File file, boolean readGlosses) throws IOException {
+        long[] offsetArray = new long[1 << 14];
+        List<String[]> wordList = new ArrayList<String[]>();
+        List<long[]> hypernymList = new ArrayList<long[]>();
+        List<long[]> hyponymList = new ArrayList<long[]>();
+        List<String> glossList = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(" ")) {
+                    continue; // license
+                }
+                int gloss = line.indexOf(" | ");
+                StringTokenizer tokens = new StringTokenizer(gloss < 0 ? line : line.substring(0, gloss), " ");
+                long offset = Long.parseLong(tokens.nextToken());
+                tokens.nextToken(); // lex_filenum
+                tokens.nextToken(); // ss_type
+                String[] ws = new String[Integer.parseInt(tokens.nextToken(), 16)];
+                for (int i = 0; i < ws.length; i++) {
+                    ws[i] = tokens.nextToken();
+                    tokens.nextToken(); // lex_id
+                }
+                int pointerCount = Integer.parseInt(tokens.nextToken());
+                long[] up = new long[pointerCount];
+                long[] down = new long[pointerCount];
+                int ups = 0;
+                int downs = 0;
+                for (int i = 0; i < pointerCount; i++) {
+                    String symbol = tokens.nextToken();
+                    long target = Long.parseLong(tokens.nextToken());
+                    tokens.nextToken(); // pos
+                    tokens.nextToken(); // source/target
+                    if (symbol.equals(HYPERNYM)) {
+                        up[ups++] = target;
+                    } else if (symbol.equals(HYPONYM)) {
+                        down[downs++] = target;
+                    }
+                }
+                if (wordList.size() == offsetArray.length) {
+                    offsetArray = Arrays.copyOf(offsetArray, 2 * offsetArray.length);
+                }
+                offsetArray[wordList.size()] = offset;
+                wordList.add(ws);
+                hypernymList.add(Arrays.copyOf(up, ups));
+                hyponymList.add(Arrays.copyOf(down, downs));
+                if (readGlosses) {
+                    glossList.add(gloss < 0 ? "" : line.substring(gloss + 3).trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        size = wordList.size();
+        offsets = Arrays.copyOf(offsetArray, size);
+        words = wordList.toArray(new String[size][]);
+        hypernyms = resolve(hypernymList);
+        hyponyms = resolve(hyponymList);
+        glosses = readGlosses ? glossList.toArray(new String[size]) : null;
+    }
+
+    /**
+     * Returns the number of the synset at <code>offset</code>, or -1 if
+     * there is none.
+     */
+    int indexOf(long offset) {
+        int i = Arrays.binarySearch(offsets, offset);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Converts pointer target offsets into synset numbers, dropping the
+     * targets that are not in the file.
+     */
+    private int[][] resolve(List<long[]> targetList) {
+        int[][] resolved = new int[size][];
+        for (int i = 0; i < size; i++) {
+            long[] targets = targetList.get(i);
+            int[] synsets = new int[targets.length];
+            int n = 0;
+            for (long target : targets) {
+                int synset = indexOf(target);
+                if (synset >= 0) {
+                    synsets[n++] = synset;
+                }
+            }
+            resolved[i] = n == synsets.length ? synsets : Arrays.copyOf(synsets, n);
+        }
+        return resolved;
+    }
+}
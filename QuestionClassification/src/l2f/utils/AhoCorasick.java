@@ -0,0 +1,159 @@
+package l2f.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton that finds which of up to 64 keywords occur in a
+ * text in a single pass over it.
+ *
+ * The keywords are compiled into a deterministic automaton over the
+ * characters they use (any other character leads back to the start
+ * state), so that each character of the text costs one table lookup. The
+ * automaton is immutable and can be shared by several threads.
+ */
+public class AhoCorasick {
+
+    /**
+     * Maximum number of keywords, the bits of the <code>find</code> mask.
+     */
+    public static final int MAX_KEYWORDS = 64;
+    private final boolean ignoreCase;
+    /**
+     * Class of each character up to the largest keyword character (0 for
+     * characters not in any keyword).
+     */
+    private final int[] charClass;
+    private final int classes;
+    /**
+     * Transition of state s on class c is <code>next[s * classes + c]</code>.
+     */
+    private final int[] next;
+    /**
+     * Keywords ending at each state, as a bit mask.
+     */
+    private final long[] output;
+
+    /**
+     * Builds the automaton for <code>keywords</code>.
+     *
+     * @param ignoreCase whether to compare the keywords and the text
+     * ignoring case
+     * @param keywords non-empty keywords; keyword i is bit i of the mask
+     * returned by <code>find</code>
+     */
+    public AhoCorasick(boolean ignoreCase, String... keywords) {
+        if (keywords.length > MAX_KEYWORDS) {
+            throw new IllegalArgumentException("At most " + MAX_KEYWORDS + " keywords are supported: " + keywords.length);
+        }
+        this.ignoreCase = ignoreCase;
+        String[] normalized = new String[keywords.length];
+        char max = 0;
+        for (int k = 0; k < keywords.length; k++) {
+            if (keywords[k].length() == 0) {
+                throw new IllegalArgumentException("Empty keyword.");
+            }
+            normalized[k] = ignoreCase ? toLowerCase(keywords[k]) : keywords[k];
+            for (int i = 0; i < normalized[k].length(); i++) {
+                max = (char) Math.max(max, normalized[k].charAt(i));
+            }
+        }
+        charClass = new int[max + 1];
+        int classCount = 1;
+        for (String keyword : normalized) {
+            for (int i = 0; i < keyword.length(); i++) {
+                if (charClass[keyword.charAt(i)] == 0) {
+                    charClass[keyword.charAt(i)] = classCount++;
+                }
+            }
+        }
+        classes = classCount;
+
+        // trie, with -1 for missing transitions
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Long> outputs = new ArrayList<Long>();
+        trie.add(newRow());
+        outputs.add(0L);
+        for (int k = 0; k < normalized.length; k++) {
+            int state = 0;
+            for (int i = 0; i < normalized[k].length(); i++) {
+                int c = charClass[normalized[k].charAt(i)];
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    outputs.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            outputs.set(state, outputs.get(state) | (1L << k));
+        }
+
+        // breadth-first, fill the missing transitions with those of the
+        // failure state and merge its outputs
+        int states = trie.size();
+        next = new int[states * classes];
+        output = new long[states];
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classes; c++) {
+            int child = trie.get(0)[c];
+            if (child < 0) {
+                next[c] = 0;
+            } else {
+                next[c] = child;
+                failure[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        output[0] = outputs.get(0);
+        while (head < tail) {
+            int state = queue[head++];
+            output[state] = outputs.get(state) | output[failure[state]];
+            for (int c = 0; c < classes; c++) {
+                int child = trie.get(state)[c];
+                if (child < 0) {
+                    next[state * classes + c] = next[failure[state] * classes + c];
+                } else {
+                    next[state * classes + c] = child;
+                    failure[child] = next[failure[state] * classes + c];
+                    queue[tail++] = child;
+                }
+            }
+        }
+    }
+
+    private static String toLowerCase(String keyword) {
+        char[] chars = keyword.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private int[] newRow() {
+        int[] row = new int[classes];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * Returns a mask with bit i set if keyword i occurs in <code>text</code>.
+     */
+    public long find(CharSequence text) {
+        long found = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ignoreCase) {
+                ch = Character.toLowerCase(ch);
+            }
+            int c = ch < charClass.length ? charClass[ch] : 0;
+            state = next[state * classes + c];
+            found |= output[state];
+        }
+        return found;
+    }
+}
@@ -0,0 +1,80 @@
+package l2f.utils;
+
+/**
+ * Bloom filter of strings: a bit set that answers whether a string may have
+ * been added (with a small, configurable rate of false positives) or was
+ * certainly not added, without storing the strings.
+ *
+ * Each string sets <code>hashes</code> bits, derived from two 32-bit hashes
+ * of its characters. The filter is not synchronized, but can be read
+ * concurrently once built.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int size;
+    private final int hashes;
+
+    /**
+     * Creates a filter for about <code>expectedSize</code> strings, with
+     * bits and hashes chosen for <code>falsePositiveRate</code>.
+     */
+    public BloomFilter(int expectedSize, double falsePositiveRate) {
+        if (expectedSize < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size (" + expectedSize
+                    + ") or false positive rate (" + falsePositiveRate + ").");
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedSize * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.size = (int) Math.min(Math.max(m, 64), Integer.MAX_VALUE - 63);
+        this.bits = new long[(size + 63) >>> 6];
+        this.hashes = Math.max(1, (int) Math.round((double) size / expectedSize * ln2));
+    }
+
+    public void add(CharSequence s) {
+        int h1 = hash1(s);
+        int h2 = hash2(s);
+        for (int i = 0; i < hashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns false if <code>s</code> was certainly not added, and true if
+     * it probably was.
+     */
+    public boolean mightContain(CharSequence s) {
+        int h1 = hash1(s);
+        int h2 = hash2(s);
+        for (int i = 0; i < hashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % size;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as <code>String.hashCode</code>.
+     */
+    private static int hash1(CharSequence s) {
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * FNV-1a hash, made odd so that the bits of a string do not repeat.
+     */
+    private static int hash2(CharSequence s) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x01000193;
+        }
+        return h | 1;
+    }
+}
@@ -0,0 +1,181 @@
+package l2f.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive <code>long</code> keys to
+ * primitive <code>int</code> values, which avoids the boxing and per-entry
+ * objects of a <code>HashMap&lt;Long, Integer&gt;</code>.
+ *
+ * <code>Long.MIN_VALUE</code> is reserved to mark free slots, and cannot be
+ * used as a key. Lookups of missing keys return the map's default value.
+ * The map is not synchronized, but can be read concurrently once built.
+ */
+public class LongIntMap implements Serializable {
+
+    private static final long serialVersionUID = 4470329870357045021L;
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private final int defaultValue;
+
+    public LongIntMap(int expectedSize, int defaultValue) {
+        this.defaultValue = defaultValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongIntMap(int defaultValue) {
+        this(16, defaultValue);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        size = 0;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the slot of <code>key</code>, or of the free slot where it
+     * should be inserted.
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public int get(long key) {
+        int i = slot(key);
+        return keys[i] == FREE ? defaultValue : values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return keys[slot(key)] != FREE;
+    }
+
+    /**
+     * Maps <code>key</code> to <code>value</code>, returning the previous
+     * value (or the default value, if there was none).
+     */
+    public int put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+        int i = slot(key);
+        if (keys[i] != FREE) {
+            int previous = values[i];
+            values[i] = value;
+            return previous;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        return defaultValue;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Returns the keys in the map, in no particular order.
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the entries of the map to <code>out</code>.
+     * @see #read(DataInputStream)
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(defaultValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                out.writeLong(keys[i]);
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a map written by {@link #write(DataOutputStream)}.
+     */
+    public static LongIntMap read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        LongIntMap map = new LongIntMap(size, in.readInt());
+        for (int i = 0; i < size; i++) {
+            long key = in.readLong();
+            map.put(key, in.readInt());
+        }
+        return map;
+    }
+
+    /**
+     * Reads a map written by {@link #write(DataOutputStream)} from
+     * <code>buffer</code>, starting at its current position.
+     */
+    public static LongIntMap read(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        LongIntMap map = new LongIntMap(size, buffer.getInt());
+        for (int i = 0; i < size; i++) {
+            long key = buffer.getLong();
+            map.put(key, buffer.getInt());
+        }
+        return map;
+    }
+}
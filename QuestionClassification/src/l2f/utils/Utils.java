@@ -423,6 +423,19 @@ public class Utils {
         }
         return tree;
     }
+
+    /**
+     * Reads a single tree from its string representation, as returned by
+     * <code>Tree.toString()</code>. A tree without children (such as the
+     * one returned when a question cannot be parsed) is a bare label.
+     */
+    public static Tree<String> parseTree(String str) {
+        if (!str.startsWith("(")) {
+            return new Tree<String>(str);
+        }
+        List<Tree<String>> trees = valueOf(str);
+        return trees.isEmpty() ? new Tree<String>(str) : trees.get(0);
+    }
     
     @SuppressWarnings("unchecked")
     public static <T> List<List<T>> powerSet(List<T> features, boolean includeEmptySet) {